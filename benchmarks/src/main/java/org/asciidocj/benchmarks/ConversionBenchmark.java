@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.asciidocj.AsciiDocProcessor;
+import org.asciidocj.ToHtmlSerializer;
+import org.asciidocj.ast.DocumentNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the parse, serialize and end-to-end conversion stages separately
+ * for each corpus document. Throughput is reported in ops/s and the sample
+ * mode reports latency percentiles; run with <code>-prof gc</code> to add
+ * allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ConversionBenchmark {
+
+	@Param({ Corpus.SMALL, Corpus.MEDIUM, Corpus.LARGE })
+	public String document;
+
+	private AsciiDocProcessor processor;
+	private char[] source;
+	private DocumentNode astRoot;
+
+	@Setup
+	public void setup() {
+		// never time out, the large document is meant to take a while
+		processor = new AsciiDocProcessor(Long.MAX_VALUE);
+		source = Corpus.get(document).toCharArray();
+		astRoot = processor.parseAsciidoc(source);
+	}
+
+	@Benchmark
+	public DocumentNode parse() {
+		return processor.parseAsciidoc(source);
+	}
+
+	@Benchmark
+	public String serialize() {
+		return new ToHtmlSerializer().toHtml(astRoot);
+	}
+
+	@Benchmark
+	public String convert() {
+		return processor.asciidocToHtml(source);
+	}
+}
\ No newline at end of file
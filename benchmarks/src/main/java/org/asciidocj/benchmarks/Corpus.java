@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates the synthetic AsciiDoc documents used by the benchmarks.
+ * 
+ * Documents are built deterministically from a fixed seed so that results of
+ * different runs are comparable. They consist of one-line and two-line
+ * section titles, each followed by a few multi-line paragraphs.
+ */
+public final class Corpus {
+
+	public static final String SMALL = "small";
+	public static final String MEDIUM = "medium";
+	public static final String LARGE = "large";
+
+	private static final String[] WORDS = { "asciidoc", "document", "section",
+			"paragraph", "the", "a", "of", "and", "to", "in", "is", "title",
+			"text", "parser", "grammar", "rule", "inline", "block", "with",
+			"for", "output", "HTML", "source", "structure", "element", "may",
+			"contain", "other", "lines", "processor" };
+
+	private Corpus() {
+	}
+
+	/**
+	 * @param name
+	 *            one of {@link #SMALL}, {@link #MEDIUM} or {@link #LARGE}
+	 * @return the corpus document with the given name
+	 */
+	public static String get(String name) {
+		if (SMALL.equals(name))
+			return generate(2 * 1024);
+		if (MEDIUM.equals(name))
+			return generate(64 * 1024);
+		if (LARGE.equals(name))
+			return generate(4 * 1024 * 1024);
+		throw new IllegalArgumentException("Unknown corpus document: " + name);
+	}
+
+	/**
+	 * Generates a document of approximately the given length.
+	 * 
+	 * @param length
+	 *            the minimum number of characters to generate
+	 * @return the document
+	 */
+	public static String generate(int length) {
+		Random random = new Random(0x2626);
+		StringBuilder sb = new StringBuilder(length + 1024);
+		int section = 0;
+		while (sb.length() < length) {
+			section++;
+			if (section % 10 == 1) {
+				String title = "Chapter " + section;
+				sb.append(title).append('\n');
+				for (int i = 0; i < title.length(); i++)
+					sb.append(section % 20 == 1 ? '=' : '-');
+				sb.append("\n\n");
+			} else {
+				int level = 2 + section % 4;
+				for (int i = 0; i < level; i++)
+					sb.append('=');
+				sb.append(" Section ").append(section).append("\n\n");
+			}
+			int paragraphs = 1 + random.nextInt(4);
+			for (int p = 0; p < paragraphs; p++) {
+				appendParagraph(sb, random);
+				sb.append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void appendParagraph(StringBuilder sb, Random random) {
+		int lines = 1 + random.nextInt(8);
+		for (int l = 0; l < lines; l++) {
+			int words = 6 + random.nextInt(8);
+			for (int w = 0; w < words; w++) {
+				if (w > 0)
+					sb.append(' ');
+				sb.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			if (l < lines - 1 && random.nextInt(10) == 0)
+				sb.append("  "); // hard line break
+			sb.append('\n');
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.asciidocj.FastEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the table-driven {@link FastEncoder} with the previous
+ * char-by-char encoder on text with few characters to encode and on text
+ * full of markup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class EncoderBenchmark {
+
+	@Param({ "text", "markup" })
+	public String input;
+
+	private String source;
+	private char[] chars;
+	private final StringBuilder sb = new StringBuilder();
+
+	@Setup
+	public void setup() {
+		if ("markup".equals(input)) {
+			StringBuilder markup = new StringBuilder();
+			while (markup.length() < 64 * 1024)
+				markup.append("<a href=\"x.html\">Tom & Jerry's</a> ");
+			source = markup.toString();
+		} else
+			source = Corpus.get(Corpus.MEDIUM).replace("parser", "parser & co");
+		chars = source.toCharArray();
+	}
+
+	@Benchmark
+	public StringBuilder previous() {
+		sb.setLength(0);
+		PreviousEncoder.encode(source, sb);
+		return sb;
+	}
+
+	@Benchmark
+	public StringBuilder table() {
+		sb.setLength(0);
+		FastEncoder.encode(source, sb);
+		return sb;
+	}
+
+	@Benchmark
+	public StringBuilder tableChars() {
+		sb.setLength(0);
+		FastEncoder.encode(chars, 0, chars.length, sb);
+		return sb;
+	}
+
+	// FastEncoder before it was table-driven
+	static class PreviousEncoder {
+
+		static void encode(String string, StringBuilder sb) {
+			for (int i = 0; i < string.length(); i++) {
+				if (encode(string.charAt(i)) != null) {
+					for (i = 0; i < string.length(); i++) {
+						char c = string.charAt(i);
+						String encoded = encode(c);
+						if (encoded != null)
+							sb.append(encoded);
+						else
+							sb.append(c);
+					}
+					return;
+				}
+			}
+			sb.append(string);
+		}
+
+		static String encode(char c) {
+			switch (c) {
+			case '&':
+				return "&amp;";
+			case '<':
+				return "&lt;";
+			case '>':
+				return "&gt;";
+			case '"':
+				return "&quot;";
+			case '\'':
+				return "&#39;";
+			}
+			return null;
+		}
+	}
+}
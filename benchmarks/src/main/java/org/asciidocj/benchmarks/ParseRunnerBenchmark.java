@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.asciidocj.AsciiDocParser;
+import org.asciidocj.DefaultParseRunnerProvider;
+import org.asciidocj.FastParseRunnerProvider;
+import org.asciidocj.ParseRunnerProvider;
+import org.asciidocj.SourceInputBuffer;
+import org.asciidocj.ast.DocumentNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.parboiled.Parboiled;
+
+/**
+ * Compares the parse time of valid documents with the reporting runner
+ * created per parse by {@link DefaultParseRunnerProvider} and the reused
+ * basic runner of {@link FastParseRunnerProvider}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ParseRunnerBenchmark {
+
+	@Param({ Corpus.SMALL, Corpus.MEDIUM })
+	public String document;
+
+	@Param({ "default", "fast" })
+	public String provider;
+
+	private AsciiDocParser parser;
+	private char[] source;
+
+	@Setup
+	public void setup() {
+		ParseRunnerProvider runnerProvider = "fast".equals(provider) ? new FastParseRunnerProvider()
+				: new DefaultParseRunnerProvider();
+		parser = Parboiled.createParser(AsciiDocParser.class, Long.MAX_VALUE,
+				runnerProvider);
+		source = Corpus.get(document).toCharArray();
+	}
+
+	@Benchmark
+	public DocumentNode parse() {
+		return parser.parse(new SourceInputBuffer(source));
+	}
+}
\ No newline at end of file
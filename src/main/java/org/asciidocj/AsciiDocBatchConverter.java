@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.parboiled.common.Preconditions.checkArgNotNull;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Converts all asciidoc files of a directory tree to HTML files.
+ * 
+ * The conversions are scheduled on the given executor, one task per file,
+ * and share the pooled parsers of a {@link ConcurrentAsciiDocProcessor}, so
+ * the executor may use any number of threads, including virtual threads on
+ * newer JDKs. Every file is written next to its source with the extension
+ * replaced by ".html". A file that fails to convert is recorded in the
+ * returned {@link BatchConversionSummary} and does not stop the others.
+ */
+public class AsciiDocBatchConverter {
+
+	private static final String[] EXTENSIONS = { ".adoc", ".asciidoc", ".asc" };
+
+	private final ConcurrentAsciiDocProcessor processor;
+	private final ExecutorService executor;
+	private final Charset charset;
+
+	/**
+	 * Creates a new converter reading and writing UTF-8 files.
+	 * 
+	 * @param processor
+	 *            the processor to convert the files with
+	 * @param executor
+	 *            the executor to run the conversions on
+	 */
+	public AsciiDocBatchConverter(ConcurrentAsciiDocProcessor processor,
+			ExecutorService executor) {
+		this(processor, executor, Charset.forName("UTF-8"));
+	}
+
+	/**
+	 * Creates a new converter.
+	 * 
+	 * @param processor
+	 *            the processor to convert the files with
+	 * @param executor
+	 *            the executor to run the conversions on
+	 * @param charset
+	 *            the charset of the source and output files
+	 */
+	public AsciiDocBatchConverter(ConcurrentAsciiDocProcessor processor,
+			ExecutorService executor, Charset charset) {
+		checkArgNotNull(processor, "processor");
+		checkArgNotNull(executor, "executor");
+		checkArgNotNull(charset, "charset");
+		this.processor = processor;
+		this.executor = executor;
+		this.charset = charset;
+	}
+
+	/**
+	 * Converts all asciidoc files in the given directory and its
+	 * subdirectories and waits for all conversions to finish.
+	 * 
+	 * @param directory
+	 *            the root of the directory tree to convert
+	 * @return the outcome of every conversion
+	 * @throws IOException
+	 *             if the directory cannot be listed
+	 */
+	public BatchConversionSummary convertDirectory(File directory)
+			throws IOException {
+		List<File> sources = new ArrayList<File>();
+		collect(directory, sources);
+		return convert(sources);
+	}
+
+	/**
+	 * Converts the given asciidoc files and waits for all conversions to
+	 * finish.
+	 * 
+	 * @param sources
+	 *            the files to convert
+	 * @return the outcome of every conversion
+	 */
+	public BatchConversionSummary convert(List<File> sources) {
+		long start = System.nanoTime();
+		List<Future<BatchConversionSummary.FileResult>> futures = new ArrayList<Future<BatchConversionSummary.FileResult>>(
+				sources.size());
+		try {
+			for (File source : sources)
+				futures.add(executor.submit(conversionTask(source)));
+			List<BatchConversionSummary.FileResult> results = new ArrayList<BatchConversionSummary.FileResult>(
+					futures.size());
+			for (int i = 0; i < futures.size(); i++)
+				results.add(get(futures.get(i), sources.get(i)));
+			return new BatchConversionSummary(results, System.nanoTime()
+					- start);
+		} finally {
+			for (Future<BatchConversionSummary.FileResult> future : futures)
+				future.cancel(true);
+		}
+	}
+
+	/**
+	 * Returns the file the HTML of the given source is written to.
+	 * 
+	 * @param source
+	 *            the asciidoc file
+	 * @return the HTML file
+	 */
+	public static File targetOf(File source) {
+		String name = source.getName();
+		int dot = name.lastIndexOf('.');
+		return new File(source.getParentFile(), (dot > 0 ? name.substring(0,
+				dot) : name) + ".html");
+	}
+
+	private Callable<BatchConversionSummary.FileResult> conversionTask(
+			final File source) {
+		return new Callable<BatchConversionSummary.FileResult>() {
+			public BatchConversionSummary.FileResult call() {
+				File target = targetOf(source);
+				long start = System.nanoTime();
+				Exception failure = null;
+				try {
+					// keeps the exception of a timeout or cancellation
+					processor.converter.convert(source, target, charset);
+				} catch (IOException e) {
+					failure = e;
+				} catch (RuntimeException e) {
+					failure = e;
+				}
+				return new BatchConversionSummary.FileResult(source, target,
+						System.nanoTime() - start, failure);
+			}
+		};
+	}
+
+	private static BatchConversionSummary.FileResult get(
+			Future<BatchConversionSummary.FileResult> future, File source) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while waiting for a conversion", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException("Converting " + source
+					+ " failed", cause);
+		}
+	}
+
+	static void collect(File directory, List<File> sources)
+			throws IOException {
+		File[] files = directory.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isDirectory() || isAsciidoc(file.getName());
+			}
+		});
+		if (files == null)
+			throw new IOException("Cannot list directory " + directory);
+		for (File file : files) {
+			if (file.isDirectory())
+				collect(file, sources);
+			else
+				sources.add(file);
+		}
+	}
+
+	private static boolean isAsciidoc(String name) {
+		for (String extension : EXTENSIONS) {
+			if (name.endsWith(extension))
+				return true;
+		}
+		return false;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.parboiled.common.Preconditions.checkArgNotNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.asciidocj.ast.DocumentNode;
+import org.asciidocj.ast.Node;
+import org.asciidocj.ast.ParaNode;
+import org.asciidocj.ast.SectionNode;
+import org.asciidocj.ast.SimpleNode;
+import org.asciidocj.ast.SuperNode;
+import org.asciidocj.ast.TextNode;
+import org.asciidocj.ast.TitleNode;
+
+/**
+ * Reads a document as a stream of events, pulled one at a time with
+ * {@link #next()}, instead of as a complete tree.
+ * 
+ * The document is parsed by the regular grammar one top-level section at a
+ * time, as the events of the previous section have been read, so memory use
+ * depends on the size of the largest section rather than on the size of the
+ * document. The events describe the same tree a complete parse yields, in
+ * document order: every start event is matched by an end event, and text and
+ * simple nodes are reported by a single event.
+ * 
+ * The parse budget of the parser applies to each section separately. The
+ * source is read in place and must not change while events are read.
+ */
+public class AsciiDocEventReader {
+
+	public enum Event {
+		START_DOCUMENT, END_DOCUMENT, START_SECTION, END_SECTION, START_TITLE,
+		END_TITLE, START_PARA, END_PARA,
+		/** the start of a node grouping other nodes without markup */
+		START_ELEMENT,
+		/** the end of a node grouping other nodes without markup */
+		END_ELEMENT, TEXT, SIMPLE
+	}
+
+	private final AsciiDocParser parser;
+	private final CharSequence source;
+
+	// the source index at which the next section is parsed, -1 behind the
+	// last one
+	private int position;
+	// the source index the indices of the current section are relative to
+	private int offset;
+
+	// the path from the current section down to the node being read
+	private Node[] path = new Node[8];
+	private int[] nextChild = new int[8];
+	private int depth;
+
+	private Event event;
+	private Node node;
+
+	/**
+	 * @param parser
+	 *            the parser to parse the sections with, which must not be
+	 *            used otherwise while events are read
+	 * @param source
+	 *            the asciidoc source
+	 */
+	public AsciiDocEventReader(AsciiDocParser parser, CharSequence source) {
+		checkArgNotNull(parser, "parser");
+		checkArgNotNull(source, "source");
+		this.parser = parser;
+		this.source = source;
+	}
+
+	/**
+	 * @return true unless the END_DOCUMENT event has been read
+	 */
+	public boolean hasNext() {
+		return event != Event.END_DOCUMENT;
+	}
+
+	/**
+	 * Reads the next event. Reading the first event of a section parses the
+	 * section; if it cannot be parsed within the parse budget the method
+	 * throws a ParsingTimeoutException.
+	 * 
+	 * @return the event read
+	 */
+	public Event next() {
+		if (event == null) {
+			node = null;
+			return event = Event.START_DOCUMENT;
+		}
+		if (event == Event.END_DOCUMENT)
+			throw new NoSuchElementException();
+		if (depth == 0) {
+			Node section = nextSection();
+			if (section == null) {
+				node = null;
+				return event = Event.END_DOCUMENT;
+			}
+			return enter(section);
+		}
+		List<Node> children = path[depth - 1].getChildren();
+		int index = nextChild[depth - 1];
+		if (index < children.size()) {
+			nextChild[depth - 1]++;
+			return enter(children.get(index));
+		}
+		node = path[--depth];
+		path[depth] = null;
+		return event = endEvent(node);
+	}
+
+	/**
+	 * @return the event last read
+	 */
+	public Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * @return the source index at which the node of the current event
+	 *         starts, 0 for the document events
+	 */
+	public int getStartIndex() {
+		return node != null ? offset + node.getStartIndex() : 0;
+	}
+
+	/**
+	 * @return the source index behind the node of the current event, the
+	 *         source length for the document events
+	 */
+	public int getEndIndex() {
+		return node != null ? offset + node.getEndIndex() : source.length();
+	}
+
+	/**
+	 * @return the level of the title of a START_TITLE or END_TITLE event
+	 */
+	public int getLevel() {
+		return ((TitleNode) current(Event.START_TITLE, Event.END_TITLE))
+				.getLevel();
+	}
+
+	/**
+	 * @return the text of a TEXT event
+	 */
+	public String getText() {
+		return getTextNode().getText();
+	}
+
+	/**
+	 * @return the type of a SIMPLE event
+	 */
+	public SimpleNode.Type getSimpleType() {
+		return ((SimpleNode) current(Event.SIMPLE, Event.SIMPLE)).getType();
+	}
+
+	// the node of a TEXT event, to print its text without copying it
+	TextNode getTextNode() {
+		return (TextNode) current(Event.TEXT, Event.TEXT);
+	}
+
+	private Node current(Event expected, Event alternative) {
+		if (event != expected && event != alternative)
+			throw new IllegalStateException("Not available for " + event);
+		return node;
+	}
+
+	private Event enter(Node child) {
+		node = child;
+		if (child instanceof TextNode)
+			return event = Event.TEXT;
+		if (child instanceof SimpleNode)
+			return event = Event.SIMPLE;
+		if (!(child instanceof SuperNode))
+			throw new IllegalStateException("Unsupported node " + child);
+		if (depth == path.length) {
+			path = Arrays.copyOf(path, depth * 2);
+			nextChild = Arrays.copyOf(nextChild, depth * 2);
+		}
+		path[depth] = child;
+		nextChild[depth] = 0;
+		depth++;
+		return event = startEvent(child);
+	}
+
+	private static Event startEvent(Node node) {
+		if (node instanceof SectionNode)
+			return Event.START_SECTION;
+		if (node instanceof TitleNode)
+			return Event.START_TITLE;
+		if (node instanceof ParaNode)
+			return Event.START_PARA;
+		return Event.START_ELEMENT;
+	}
+
+	private static Event endEvent(Node node) {
+		if (node instanceof SectionNode)
+			return Event.END_SECTION;
+		if (node instanceof TitleNode)
+			return Event.END_TITLE;
+		if (node instanceof ParaNode)
+			return Event.END_PARA;
+		return Event.END_ELEMENT;
+	}
+
+	// parses the section starting at the current position, returns null
+	// behind the last one
+	private Node nextSection() {
+		if (position < 0)
+			return null;
+		DocumentNode partial = parser.parseSections(new SourceInputBuffer(
+				source, position), 1);
+		List<Node> sections = partial.getChildren();
+		if (sections.isEmpty()) {
+			position = -1;
+			return null;
+		}
+		offset = position;
+		position += partial.getEndIndex();
+		if (position >= source.length())
+			position = -1; // the section ends in the newlines behind the source
+		return sections.get(0);
+	}
+}
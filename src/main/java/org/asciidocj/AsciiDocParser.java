@@ -22,11 +22,13 @@ import static org.parboiled.common.StringUtils.repeat;
 import static org.parboiled.errors.ErrorUtils.printParseErrors;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.asciidocj.ast.AbstractNode;
 import org.asciidocj.ast.DocumentNode;
 import org.asciidocj.ast.Node;
 import org.asciidocj.ast.ParaNode;
+import org.asciidocj.ast.SectionNode;
 import org.asciidocj.ast.SimpleNode;
 import org.asciidocj.ast.SimpleNode.Type;
 import org.asciidocj.ast.SuperNode;
@@ -35,7 +37,10 @@ import org.asciidocj.ast.TitleNode;
 import org.parboiled.BaseParser;
 import org.parboiled.Rule;
 import org.parboiled.annotations.MemoMismatches;
+import org.parboiled.buffers.DefaultInputBuffer;
+import org.parboiled.buffers.InputBuffer;
 import org.parboiled.common.ArrayBuilder;
+import org.parboiled.errors.ParserRuntimeException;
 import org.parboiled.support.ParsingResult;
 import org.parboiled.support.StringBuilderVar;
 
@@ -48,21 +53,60 @@ public class AsciiDocParser extends BaseParser<Object> {
 	public static ParseRunnerProvider defaultParseRunnerProvider = new DefaultParseRunnerProvider();
 
 	protected final long maxParsingTimeInMillis;
+	protected final ParseBudget budget;
 	protected final ParseRunnerProvider parseRunnerProvider;
 
-	long parsingStartTimeStamp = 0L;
+	// state of the running parse's budget
+	private long parsingStartNanos;
+	private long stepsChecked; // steps tried up to the last check
+	private int stepsUntilCheck;
+
+	int parseLimit = Integer.MAX_VALUE;
+
+	private final TextRun textRun = new TextRun();
+	// the future whose cancellation aborts the current parse, if any
+	private volatile Future<?> cancellation;
+	private boolean lineScanningEnabled = true;
+	// answers the line-based lookaheads of the running parse, null if the
+	// grammar matches them itself
+	private LineScanner lines;
 
 	public AsciiDocParser(Long maxParsingTimeInMillis,
 			ParseRunnerProvider parseRunnerProvider) {
-		this.maxParsingTimeInMillis = maxParsingTimeInMillis;
+		this(new ParseBudget(maxParsingTimeInMillis), parseRunnerProvider);
+	}
+
+	public AsciiDocParser(ParseBudget budget,
+			ParseRunnerProvider parseRunnerProvider) {
+		this.maxParsingTimeInMillis = budget.getMaxParsingTimeInMillis();
+		this.budget = budget;
 		this.parseRunnerProvider = parseRunnerProvider;
 	}
 
+	/**
+	 * Enables or disables line scanning. With line scanning, which is the
+	 * default, the lookaheads for two-line titles are answered from a table
+	 * of the input lines built in a single pass instead of matching the
+	 * following lines again at every line end. The resulting trees are the
+	 * same either way.
+	 * 
+	 * @param enabled
+	 *            whether to scan lines
+	 */
+	public void setLineScanning(boolean enabled) {
+		lineScanningEnabled = enabled;
+	}
+
 	public DocumentNode parse(char[] source) {
 		DocumentNode root = parseInternal(source);
 		return root;
 	}
 
+	public DocumentNode parse(InputBuffer input) {
+		DocumentNode root = parseInternal(input);
+		return root;
+	}
+
 	// *********** DOCUMENT ***********
 
 	public Rule Document() {
@@ -70,8 +114,18 @@ public class AsciiDocParser extends BaseParser<Object> {
 				ZeroOrMore(Section(), addAsChild()));
 	}
 
+	/**
+	 * Like {@link #Document()} but only starts new sections before the
+	 * current parse limit, used for reparsing part of a document.
+	 */
+	public Rule PartialDocument() {
+		return NodeSequence(push(new DocumentNode()),
+				ZeroOrMore(beforeParseLimit(), Section(), addAsChild()));
+	}
+
 	public Rule Section() {
-		return NodeSequence(Title(), Optional(SectionBody()));
+		return NodeSequence(push(new SectionNode()), Title(), addAsChild(),
+				Optional(SectionBody()));
 	}
 
 	public Rule Title() {
@@ -79,13 +133,13 @@ public class AsciiDocParser extends BaseParser<Object> {
 	}
 
 	public Rule SectionBody() {
-		return NodeSequence(OneOrMore(Block(), addAsChild()));
+		return OneOrMore(Block(), addAsChild());
 	}
 
 	// ************* BLOCKS ****************
 
 	public Rule Block() {
-		return Sequence(ZeroOrMore(BlankLine()),
+		return Sequence(ZeroOrMore(BlankLine()), TestNot(Title()),
 				FirstOf(new ArrayBuilder<Rule>().add(Para(), Inlines()).get()));
 	}
 
@@ -123,11 +177,16 @@ public class AsciiDocParser extends BaseParser<Object> {
 
 	public Rule TwoLineTitle() {
 		return Sequence(
-				Test(OneOrMore(NotNewline(), ANY),
-						Newline(),
-						FirstOf(NOrMore('=', 3), NOrMore('-', 3),
-								NOrMore('~', 3), NOrMore('^', 3),
-								NOrMore('+', 3)), Newline()),
+				FirstOf(Sequence(lineScanning(), isTitleLine()),
+						Sequence(
+								!lineScanning(),
+								Test(OneOrMore(NotNewline(), ANY),
+										Newline(),
+										FirstOf(NOrMore('=', 3),
+												NOrMore('-', 3),
+												NOrMore('~', 3),
+												NOrMore('^', 3),
+												NOrMore('+', 3)), Newline()))),
 				FirstOf(TwoLineTitleLevel1(), TwoLineTitleLevel2()));
 	}
 
@@ -196,9 +255,11 @@ public class AsciiDocParser extends BaseParser<Object> {
 						BlankLine(),
 						'>',
 						OneLineTitleStart(),
-						Sequence(ZeroOrMore(NotNewline(), ANY), Newline(),
+						Sequence(lineScanning(), isUnderlinedLine()),
+						Sequence(!lineScanning(),
+								ZeroOrMore(NotNewline(), ANY), Newline(),
 								FirstOf(NOrMore('=', 3), NOrMore('-', 3)),
-								Newline()))));
+								Newline()))), push(new TextNode(" ")));
 	}
 
 	// ************* LINES ****************
@@ -215,12 +276,11 @@ public class AsciiDocParser extends BaseParser<Object> {
 	// ************* BASICS ****************
 
 	public Rule Str() {
-		return NodeSequence(OneOrMore(NormalChar()),
-				push(new TextNode(match())));
+		return Sequence(new TextRunMatcher(false), pushTextRun(false));
 	}
 
 	public Rule Space() {
-		return NodeSequence(OneOrMore(Spacechar()), push(new TextNode(" ")));
+		return Sequence(new TextRunMatcher(true), pushTextRun(true));
 	}
 
 	public Rule Spn1() {
@@ -290,17 +350,33 @@ public class AsciiDocParser extends BaseParser<Object> {
 		return true;
 	}
 
+	// pushes the run matched by the preceding TextRunMatcher, text runs are
+	// only turned into nodes if they cannot be appended to a preceding one
+	protected boolean pushTextRun(boolean space) {
+		return push(textRun.set(getContext().getInputBuffer(), matchStart(),
+				matchEnd(), space));
+	}
+
 	public boolean addAsChild() {
 		SuperNode parent = (SuperNode) peek(1);
 		List<Node> children = parent.getChildren();
-		Node child = popAsNode();
+		Node child = (Node) pop();
+		if (child == textRun) {
+			Node lastChild = children.isEmpty() ? null : children
+					.get(children.size() - 1);
+			if (lastChild != null && lastChild.getClass() == TextNode.class)
+				textRun.appendTo((TextNode) lastChild);
+			else
+				children.add(textRun.toTextNode());
+			return true;
+		}
 		if (child.getClass() == TextNode.class && !children.isEmpty()) {
 			Node lastChild = children.get(children.size() - 1);
 			if (lastChild.getClass() == TextNode.class) {
 				// collapse peer TextNodes
 				TextNode last = (TextNode) lastChild;
 				TextNode current = (TextNode) child;
-				last.append(current.getText());
+				last.append(current);
 				last.setEndIndex(current.getEndIndex());
 				return true;
 			}
@@ -310,7 +386,8 @@ public class AsciiDocParser extends BaseParser<Object> {
 	}
 
 	public Node popAsNode() {
-		return (Node) pop();
+		Node node = (Node) pop();
+		return node == textRun ? textRun.toTextNode() : node;
 	}
 
 	public String popAsString() {
@@ -352,8 +429,42 @@ public class AsciiDocParser extends BaseParser<Object> {
 		}
 	}
 
+	static void shiftIndices(Node node, int delta) {
+		((AbstractNode) node).shiftIndices(delta);
+		for (Node subNode : node.getChildren()) {
+			shiftIndices(subNode, delta);
+		}
+	}
+
 	public DocumentNode parseInternal(char[] source) {
-		ParsingResult<Node> result = parseToParsingResult(source);
+		return parseInternal(new DefaultInputBuffer(source));
+	}
+
+	/**
+	 * Parses the sections of the given input that start before the given
+	 * limit. The last section may extend beyond the limit.
+	 * 
+	 * @param input
+	 *            the input to parse
+	 * @param limit
+	 *            the index at which no new section is started
+	 * @return a DocumentNode holding the parsed sections
+	 */
+	public DocumentNode parseSections(InputBuffer input, int limit) {
+		parseLimit = limit;
+		try {
+			return parseInternal(PartialDocument(), input);
+		} finally {
+			parseLimit = Integer.MAX_VALUE;
+		}
+	}
+
+	public DocumentNode parseInternal(InputBuffer input) {
+		return parseInternal(Document(), input);
+	}
+
+	DocumentNode parseInternal(Rule rule, InputBuffer input) {
+		ParsingResult<Node> result = parseToParsingResult(rule, input);
 		if (result.hasErrors()) {
 			throw new RuntimeException(
 					"Internal error during AsciiDoc parsing:\n--- ParseErrors ---\n"
@@ -366,17 +477,87 @@ public class AsciiDocParser extends BaseParser<Object> {
 		return (DocumentNode) result.resultValue;
 	}
 
-	ParsingResult<Node> parseToParsingResult(char[] source) {
-		parsingStartTimeStamp = System.currentTimeMillis();
-		return parseRunnerProvider.get(Document()).run(source);
+	ParsingResult<Node> parseToParsingResult(Rule rule, InputBuffer input) {
+		parsingStartNanos = System.nanoTime();
+		// check at the first step, then every checkInterval steps
+		stepsChecked = 1 - budget.checkInterval;
+		stepsUntilCheck = 1;
+		lines = lineScanningEnabled ? new LineScanner(input) : null;
+		try {
+			return parseRunnerProvider.get(rule).run(input);
+		} catch (ParserRuntimeException e) {
+			// parboiled wraps exceptions thrown by actions
+			if (e.getCause() instanceof ParsingTimeoutException)
+				throw (ParsingTimeoutException) e.getCause();
+			throw e;
+		} finally {
+			textRun.clear();
+			lines = null;
+		}
+	}
+
+	/**
+	 * @return the number of inline elements tried by the last parse, the unit
+	 *         of the step limit of the {@link ParseBudget}
+	 */
+	public long getSteps() {
+		return stepsChecked + budget.checkInterval - stepsUntilCheck;
+	}
+
+	protected boolean lineScanning() {
+		return lines != null;
+	}
+
+	protected boolean isTitleLine() {
+		return lines.isTitleLine(currentIndex());
+	}
+
+	protected boolean isUnderlinedLine() {
+		return lines.isUnderlinedLine(currentIndex());
+	}
+
+	protected boolean beforeParseLimit() {
+		return currentIndex() < parseLimit;
 	}
 
 	protected boolean checkForParsingTimeout() {
-		if (System.currentTimeMillis() - parsingStartTimeStamp > maxParsingTimeInMillis)
-			throw new ParsingTimeoutException();
+		if (--stepsUntilCheck == 0)
+			checkBudget();
 		return true;
 	}
 
+	private void checkBudget() {
+		stepsUntilCheck = budget.checkInterval;
+		stepsChecked += budget.checkInterval;
+		long elapsed = System.nanoTime() - parsingStartNanos;
+		if (stepsChecked > budget.maxSteps)
+			throw new ParsingTimeoutException("Step limit of "
+					+ budget.maxSteps + " exceeded", elapsed, currentIndex());
+		if (budget.maxParsingTimeInNanos != ParseBudget.UNLIMITED
+				&& elapsed > budget.maxParsingTimeInNanos)
+			throw new ParsingTimeoutException("Parsing timed out", elapsed,
+					currentIndex());
+		if (budget.interruptible && Thread.currentThread().isInterrupted())
+			throw new ParsingCancelledException("Parsing interrupted",
+					elapsed, currentIndex());
+		Future<?> owner = cancellation;
+		if (owner != null && owner.isCancelled())
+			throw new ParsingCancelledException("Conversion cancelled",
+					elapsed, currentIndex());
+	}
+
+	/**
+	 * Makes parses abort with a ParsingCancelledException at the next budget
+	 * check once the given future has been cancelled.
+	 * 
+	 * @param cancellation
+	 *            the future of the conversion running the parses, null to
+	 *            stop watching
+	 */
+	void setCancellation(Future<?> cancellation) {
+		this.cancellation = cancellation;
+	}
+
 	protected interface SuperNodeCreator {
 		SuperNode create(Node child);
 	}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.parboiled.Parboiled;
+
+/**
+ * A bounded pool of {@link AsciiDocParser} instances.
+ * 
+ * Parsers are created lazily, up to the configured maximum, the first time
+ * no idle instance is available. Once the maximum has been reached
+ * {@link #borrow()} blocks until another thread returns a parser with
+ * {@link #release(AsciiDocParser)}.
+ */
+public class AsciiDocParserPool {
+
+	private final int maxSize;
+	private final ParseBudget budget;
+	private final BlockingQueue<AsciiDocParser> idle;
+	private final AtomicInteger created = new AtomicInteger();
+	// one permit per parser that may be borrowed, idle or yet to be created
+	private final Semaphore available;
+
+	/**
+	 * Creates a new pool holding at most one parser per available processor.
+	 * 
+	 * @param maxParsingTimeInMillis
+	 *            the parsing timeout of the pooled parsers
+	 */
+	public AsciiDocParserPool(long maxParsingTimeInMillis) {
+		this(Runtime.getRuntime().availableProcessors(),
+				maxParsingTimeInMillis);
+	}
+
+	/**
+	 * Creates a new pool holding at most maxSize parsers.
+	 * 
+	 * @param maxSize
+	 *            the maximum number of parsers ever created by this pool
+	 * @param maxParsingTimeInMillis
+	 *            the parsing timeout of the pooled parsers
+	 */
+	public AsciiDocParserPool(int maxSize, long maxParsingTimeInMillis) {
+		this(maxSize, new ParseBudget(maxParsingTimeInMillis));
+	}
+
+	/**
+	 * Creates a new pool holding at most maxSize parsers.
+	 * 
+	 * @param maxSize
+	 *            the maximum number of parsers ever created by this pool
+	 * @param budget
+	 *            the parse budget of the pooled parsers
+	 */
+	public AsciiDocParserPool(int maxSize, ParseBudget budget) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("maxSize must be positive");
+		this.maxSize = maxSize;
+		this.budget = budget;
+		this.idle = new ArrayBlockingQueue<AsciiDocParser>(maxSize);
+		this.available = new Semaphore(maxSize);
+	}
+
+	/**
+	 * Takes a parser out of the pool, creating a new one if the pool has not
+	 * reached its maximum size yet, or waiting for one to be released
+	 * otherwise. The caller must hand the parser back with
+	 * {@link #release(AsciiDocParser)} once done.
+	 * 
+	 * @return a parser that is exclusively owned by the caller
+	 */
+	public AsciiDocParser borrow() {
+		try {
+			available.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while waiting for a parser", e);
+		}
+		// with a permit either a parser is idle or fewer than maxSize are out
+		AsciiDocParser parser = idle.poll();
+		if (parser != null)
+			return parser;
+		created.incrementAndGet();
+		try {
+			parser = createParser();
+		} finally {
+			// give the slot back, waking a waiter, if the parser could not be
+			// created
+			if (parser == null) {
+				created.decrementAndGet();
+				available.release();
+			}
+		}
+		return parser;
+	}
+
+	/**
+	 * Returns a parser previously obtained with {@link #borrow()}.
+	 * 
+	 * @param parser
+	 *            the parser to return
+	 */
+	public void release(AsciiDocParser parser) {
+		if (!idle.offer(parser))
+			throw new IllegalStateException(
+					"Released more parsers than were borrowed");
+		available.release();
+	}
+
+	/**
+	 * @return the maximum number of parsers held by this pool
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the number of parsers created so far
+	 */
+	public int getCreatedCount() {
+		return created.get();
+	}
+
+	/**
+	 * Creates a new parser instance. Override this method for pooling custom
+	 * parser subclasses.
+	 * 
+	 * @return the new parser
+	 */
+	protected AsciiDocParser createParser() {
+		return Parboiled.createParser(AsciiDocParser.class, budget,
+				new FastParseRunnerProvider());
+	}
+}
\ No newline at end of file
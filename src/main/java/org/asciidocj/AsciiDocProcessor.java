@@ -18,8 +18,15 @@
 
 package org.asciidocj;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.asciidocj.ConversionListeners.Trace;
 import org.asciidocj.ast.DocumentNode;
 import org.parboiled.Parboiled;
+import org.parboiled.buffers.InputBuffer;
 
 /**
  * An AsciiDoc-to-HTML processor based on a PEG parser implemented with
@@ -27,7 +34,8 @@ import org.parboiled.Parboiled;
  * 
  * An AsciiDocProcessor is not thread-safe (since it internally reused the
  * parboiled parser instance). If you need to process AsciiDoc source in
- * parallel create one AsciiDocProcessor per thread!
+ * parallel create one AsciiDocProcessor per thread or share a single
+ * {@link ConcurrentAsciiDocProcessor}!
  * 
  * @see <a href="http://www.asciidoc.org/">AsciiDoc</a>
  * @see <a href="http://www.parboiled.org/">parboiled.org</a>
@@ -37,6 +45,21 @@ public class AsciiDocProcessor {
 	public static final long DEFAULT_MAX_PARSING_TIME = 2000;
 
 	public final AsciiDocParser parser;
+	public final ToHtmlSerializerPool serializers = new ToHtmlSerializerPool();
+	private final ConversionListeners listeners = new ConversionListeners();
+	private final Converter converter = new Converter(listeners, serializers) {
+		@Override
+		DocumentNode parse(InputBuffer input, Trace trace) {
+			try {
+				DocumentNode astRoot = parser.parse(input);
+				trace.parsed(parser);
+				return astRoot;
+			} catch (ParsingTimeoutException e) {
+				listeners.timedOut(trace, parser, e);
+				throw e;
+			}
+		}
+	};
 
 	/**
 	 * Creates a new processor instance with the default parsing timeout.
@@ -51,9 +74,18 @@ public class AsciiDocProcessor {
 	 * @param maxParsingTimeInMillis
 	 */
 	public AsciiDocProcessor(long maxParsingTimeInMillis) {
-		this(Parboiled.createParser(AsciiDocParser.class,
-				maxParsingTimeInMillis,
-				new DefaultParseRunnerProvider()));
+		this(new ParseBudget(maxParsingTimeInMillis));
+	}
+
+	/**
+	 * Creates a new processor instance with the given parse budget.
+	 * 
+	 * @param budget
+	 *            the limits of a single parse
+	 */
+	public AsciiDocProcessor(ParseBudget budget) {
+		this(Parboiled.createParser(AsciiDocParser.class, budget,
+				new FastParseRunnerProvider()));
 	}
 
 	/**
@@ -75,7 +107,20 @@ public class AsciiDocProcessor {
 	 * @return the HTML
 	 */
 	public String asciidocToHtml(String asciidocSource) {
-		return asciidocToHtml(asciidocSource.toCharArray());
+		return asciidocToHtml((CharSequence) asciidocSource);
+	}
+
+	/**
+	 * Converts the given asciidoc source to HTML. If the input cannot be parsed
+	 * within the configured parsing timeout the method returns null. The
+	 * source is read in place and must not change during the conversion.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @return the HTML
+	 */
+	public String asciidocToHtml(CharSequence asciidocSource) {
+		return converter.toHtml(asciidocSource);
 	}
 
 	/**
@@ -87,39 +132,161 @@ public class AsciiDocProcessor {
 	 * @return the HTML
 	 */
 	public String asciidocToHtml(char[] asciidocSource) {
-		try {
-			DocumentNode astRoot = parseAsciidoc(asciidocSource);
-			return new ToHtmlSerializer().toHtml(astRoot);
-		} catch (ParsingTimeoutException e) {
-			return null;
-		}
+		return converter.toHtml(asciidocSource);
+	}
+
+	/**
+	 * Converts the given asciidoc source to HTML and writes it to the given
+	 * sink in chunks. If the input cannot be parsed within the configured
+	 * parsing timeout nothing is written and the method returns false.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @param out
+	 *            the sink to write the HTML to
+	 * @return true if the HTML was written
+	 * @throws IOException
+	 *             if writing to the sink fails
+	 */
+	public boolean asciidocToHtml(char[] asciidocSource, Appendable out)
+			throws IOException {
+		return converter.toHtml(asciidocSource, out);
+	}
+
+	/**
+	 * Converts the given asciidoc source to HTML and writes it to the given
+	 * stream using the given charset. The stream is flushed but not closed. If
+	 * the input cannot be parsed within the configured parsing timeout nothing
+	 * is written and the method returns false.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @param out
+	 *            the stream to write the HTML to
+	 * @param charset
+	 *            the charset to encode the HTML with
+	 * @return true if the HTML was written
+	 * @throws IOException
+	 *             if writing to the stream fails
+	 */
+	public boolean asciidocToHtml(char[] asciidocSource, OutputStream out,
+			Charset charset) throws IOException {
+		return converter.toHtml(asciidocSource, out, charset);
+	}
+
+	/**
+	 * Converts the given asciidoc file to an HTML file. The input file is
+	 * memory-mapped and decoded lazily while it is parsed, and the HTML is
+	 * written to the output file in chunks, so that the heap does not need to
+	 * hold the source text or the complete HTML. If the input cannot be parsed
+	 * within the configured parsing timeout the output file is not touched
+	 * and the method returns false.
+	 * 
+	 * @param in
+	 *            the asciidoc file to convert
+	 * @param out
+	 *            the HTML file to write, replaced if it exists
+	 * @param charset
+	 *            the charset of both files
+	 * @return true if the HTML was written
+	 * @throws IOException
+	 *             if reading or writing a file fails
+	 */
+	public boolean convertFile(File in, File out, Charset charset)
+			throws IOException {
+		return converter.convertFile(in, out, charset);
 	}
 
 	/**
 	 * Parses the given asciidoc source and returns the root node of the
 	 * generated Abstract Syntax Tree. If the input cannot be parsed within the
 	 * configured parsing timeout the method throws a ParsingTimeoutException.
+	 * The text nodes of the tree refer to the source, which must not change
+	 * while the tree is used.
 	 * 
 	 * @param asciidocSource
 	 *            the asciidoc source to convert
 	 * @return the AST root
 	 */
 	public DocumentNode parseAsciidoc(char[] asciidocSource) {
-		return parser.parse(prepareSource(asciidocSource));
+		return parser.parse(new SourceInputBuffer(asciidocSource));
 	}
 
 	/**
-	 * Adds two trailing newlines.
+	 * Parses the given asciidoc source and returns the root node of the
+	 * generated Abstract Syntax Tree. If the input cannot be parsed within the
+	 * configured parsing timeout the method throws a ParsingTimeoutException.
+	 * The source is read in place and the text nodes of the tree refer to it,
+	 * so it must not change while the tree is used.
 	 * 
-	 * @param source
-	 *            the asciidoc source to process
-	 * @return the processed source
-	 */
-	private char[] prepareSource(char[] source) {
-		char[] src = new char[source.length + 2];
-		System.arraycopy(source, 0, src, 0, source.length);
-		src[source.length] = '\n';
-		src[source.length + 1] = '\n';
-		return src;
-	}
-}
\ No newline at end of file
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @return the AST root
+	 */
+	public DocumentNode parseAsciidoc(CharSequence asciidocSource) {
+		return parser.parse(new SourceInputBuffer(asciidocSource));
+	}
+
+	/**
+	 * Returns a reader of the events of the given asciidoc source, which
+	 * parses the source one top-level section at a time as the events are
+	 * read. The parser of this processor must not be used otherwise while
+	 * the events are read.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to read
+	 * @return the event reader
+	 */
+	public AsciiDocEventReader readAsciidoc(CharSequence asciidocSource) {
+		return new AsciiDocEventReader(parser, asciidocSource);
+	}
+
+	/**
+	 * Parses the given asciidoc source after an edit, reusing the unaffected
+	 * top-level sections of the tree of the source before the edit. The
+	 * previous tree must not be used anymore afterwards. If the input cannot
+	 * be parsed within the configured parsing timeout the method throws a
+	 * ParsingTimeoutException.
+	 * 
+	 * @param previous
+	 *            the AST root of the source before the edit
+	 * @param asciidocSource
+	 *            the complete asciidoc source after the edit
+	 * @param offset
+	 *            the index at which the edit starts
+	 * @param removedLength
+	 *            the number of characters the edit removed at offset
+	 * @param insertedLength
+	 *            the number of characters the edit inserted at offset
+	 * @return the AST root
+	 * @see IncrementalParser
+	 */
+	public DocumentNode reparseAsciidoc(DocumentNode previous,
+			CharSequence asciidocSource, int offset, int removedLength,
+			int insertedLength) {
+		return new IncrementalParser(parser).reparse(previous, asciidocSource,
+				offset, removedLength, insertedLength);
+	}
+
+	/**
+	 * Registers a listener to be told the metrics of every conversion to
+	 * HTML, whether to a string, a sink or a file.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 */
+	public void addConversionListener(ConversionListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener added with
+	 * {@link #addConversionListener(ConversionListener)}.
+	 * 
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public void removeConversionListener(ConversionListener listener) {
+		listeners.remove(listener);
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of an {@link AsciiDocBatchConverter} run: one
+ * {@link FileResult} per source file, in the order the files were scheduled,
+ * and the wall-clock time of the whole run.
+ */
+public class BatchConversionSummary {
+
+	private final List<FileResult> results;
+	private final long elapsedNanos;
+
+	public BatchConversionSummary(List<FileResult> results, long elapsedNanos) {
+		this.results = Collections.unmodifiableList(results);
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * @return the results of all files
+	 */
+	public List<FileResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return the results of the files that could not be converted
+	 */
+	public List<FileResult> getFailures() {
+		List<FileResult> failures = new ArrayList<FileResult>();
+		for (FileResult result : results) {
+			if (!result.isSuccess())
+				failures.add(result);
+		}
+		return failures;
+	}
+
+	/**
+	 * @return the number of files converted successfully
+	 */
+	public int getConvertedCount() {
+		return results.size() - getFailures().size();
+	}
+
+	/**
+	 * @param unit
+	 *            the unit of the returned time
+	 * @return the wall-clock time of the whole run
+	 */
+	public long getElapsedTime(TimeUnit unit) {
+		return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String toString() {
+		return "BatchConversionSummary [" + getConvertedCount() + " of "
+				+ results.size() + " converted in "
+				+ getElapsedTime(TimeUnit.MILLISECONDS) + " ms]";
+	}
+
+	/**
+	 * The outcome of converting a single file.
+	 */
+	public static class FileResult {
+
+		private final File source;
+		private final File target;
+		private final long elapsedNanos;
+		private final Exception failure;
+
+		public FileResult(File source, File target, long elapsedNanos,
+				Exception failure) {
+			this.source = source;
+			this.target = target;
+			this.elapsedNanos = elapsedNanos;
+			this.failure = failure;
+		}
+
+		/**
+		 * @return the asciidoc file
+		 */
+		public File getSource() {
+			return source;
+		}
+
+		/**
+		 * @return the HTML file, which only exists if the conversion succeeded
+		 */
+		public File getTarget() {
+			return target;
+		}
+
+		/**
+		 * @param unit
+		 *            the unit of the returned time
+		 * @return the time spent converting this file
+		 */
+		public long getElapsedTime(TimeUnit unit) {
+			return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * @return true if the HTML file was written
+		 */
+		public boolean isSuccess() {
+			return failure == null;
+		}
+
+		/**
+		 * @return null on success, the ParsingTimeoutException of the parse
+		 *         if the file could not be parsed in time or the exception
+		 *         that stopped the conversion otherwise
+		 */
+		public Exception getFailure() {
+			return failure;
+		}
+
+		@Override
+		public String toString() {
+			return source + (failure == null ? "" : " failed: " + failure)
+					+ " (" + getElapsedTime(TimeUnit.MILLISECONDS) + " ms)";
+		}
+	}
+}
\ No newline at end of file
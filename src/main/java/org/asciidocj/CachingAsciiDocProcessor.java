@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.parboiled.common.Preconditions.checkArgNotNull;
+
+import java.nio.CharBuffer;
+
+/**
+ * An {@link AsciiDocProcessor} that looks up the HTML of a source in a
+ * {@link RenderCache} before converting it, so converting an unchanged source
+ * again only costs hashing it.
+ * 
+ * Like its superclass a CachingAsciiDocProcessor is not thread-safe, but the
+ * cache is, so one cache can be shared by the processors of several threads.
+ * Sources that cannot be parsed within the parsing timeout are not cached.
+ */
+public class CachingAsciiDocProcessor extends AsciiDocProcessor {
+
+	/**
+	 * The version of the rendered output, part of every cache key. Bump it
+	 * whenever a change to the parser or serializer changes the HTML of any
+	 * source, so that entries rendered by older releases are not served.
+	 */
+	public static final int RENDER_VERSION = 1;
+
+	public final RenderCache cache;
+
+	/**
+	 * Creates a new processor instance with the default parsing timeout.
+	 * 
+	 * @param cache
+	 *            the cache to use
+	 */
+	public CachingAsciiDocProcessor(RenderCache cache) {
+		this(DEFAULT_MAX_PARSING_TIME, cache);
+	}
+
+	/**
+	 * Creates a new processor instance with the given parsing timeout.
+	 * 
+	 * @param maxParsingTimeInMillis
+	 * @param cache
+	 *            the cache to use
+	 */
+	public CachingAsciiDocProcessor(long maxParsingTimeInMillis,
+			RenderCache cache) {
+		super(maxParsingTimeInMillis);
+		checkArgNotNull(cache, "cache");
+		this.cache = cache;
+	}
+
+	/**
+	 * Creates a new processor instance using the given Parser.
+	 * 
+	 * @param parser
+	 *            the parser instance to use
+	 * @param cache
+	 *            the cache to use
+	 */
+	public CachingAsciiDocProcessor(AsciiDocParser parser, RenderCache cache) {
+		super(parser);
+		checkArgNotNull(cache, "cache");
+		this.cache = cache;
+	}
+
+	@Override
+	public String asciidocToHtml(CharSequence asciidocSource) {
+		String key = key(asciidocSource);
+		String html = cache.get(key);
+		if (html == null) {
+			html = super.asciidocToHtml(asciidocSource);
+			if (html != null)
+				cache.put(key, html);
+		}
+		return html;
+	}
+
+	@Override
+	public String asciidocToHtml(char[] asciidocSource) {
+		return asciidocToHtml(CharBuffer.wrap(asciidocSource));
+	}
+
+	/**
+	 * Removes the HTML of the given source from the cache.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source
+	 */
+	public void invalidate(CharSequence asciidocSource) {
+		cache.invalidate(key(asciidocSource));
+	}
+
+	/**
+	 * Returns the cache key of the given source. The key covers the
+	 * {@link #RENDER_VERSION} and the parser and serializer classes, so
+	 * override this method if a subclass renders differently depending on
+	 * other state.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source
+	 * @return the cache key
+	 */
+	protected String key(CharSequence asciidocSource) {
+		return RenderCache.key(RENDER_VERSION + "/"
+				+ parser.getClass().getName() + '/'
+				+ ToHtmlSerializer.class.getName(), asciidocSource);
+	}
+}
\ No newline at end of file
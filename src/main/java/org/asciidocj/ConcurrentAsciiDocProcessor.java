@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.parboiled.common.Preconditions.checkArgNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.asciidocj.ConversionListeners.Trace;
+import org.asciidocj.ast.DocumentNode;
+import org.parboiled.buffers.InputBuffer;
+
+/**
+ * A thread-safe AsciiDoc-to-HTML processor.
+ * 
+ * Each conversion borrows a parser from an {@link AsciiDocParserPool} and
+ * returns it as soon as the source has been parsed, so a single instance can
+ * be shared by all threads of an application without creating one parser per
+ * thread.
+ * 
+ * @see AsciiDocProcessor
+ */
+public class ConcurrentAsciiDocProcessor {
+
+	public final AsciiDocParserPool pool;
+	public final ToHtmlSerializerPool serializers = new ToHtmlSerializerPool();
+	private final ConversionListeners listeners = new ConversionListeners();
+	final Converter converter = new Converter(listeners, serializers) {
+		@Override
+		DocumentNode parse(InputBuffer input, Trace trace) {
+			return ConcurrentAsciiDocProcessor.this.parse(input, trace, null);
+		}
+	};
+
+	/**
+	 * Creates a new processor instance with the default parsing timeout and
+	 * one pooled parser per available processor.
+	 */
+	public ConcurrentAsciiDocProcessor() {
+		this(AsciiDocProcessor.DEFAULT_MAX_PARSING_TIME);
+	}
+
+	/**
+	 * Creates a new processor instance with the given parsing timeout and one
+	 * pooled parser per available processor.
+	 * 
+	 * @param maxParsingTimeInMillis
+	 */
+	public ConcurrentAsciiDocProcessor(long maxParsingTimeInMillis) {
+		this(new AsciiDocParserPool(maxParsingTimeInMillis));
+	}
+
+	/**
+	 * Creates a new processor instance with the given parse budget and one
+	 * pooled parser per available processor.
+	 * 
+	 * @param budget
+	 *            the limits of a single parse
+	 */
+	public ConcurrentAsciiDocProcessor(ParseBudget budget) {
+		this(new AsciiDocParserPool(Runtime.getRuntime()
+				.availableProcessors(), budget));
+	}
+
+	/**
+	 * Creates a new processor instance using the given parser pool.
+	 * 
+	 * @param pool
+	 *            the parser pool to use
+	 */
+	public ConcurrentAsciiDocProcessor(AsciiDocParserPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Converts the given asciidoc source to HTML. If the input cannot be parsed
+	 * within the configured parsing timeout the method returns null.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @return the HTML
+	 */
+	public String asciidocToHtml(String asciidocSource) {
+		return asciidocToHtml((CharSequence) asciidocSource);
+	}
+
+	/**
+	 * Converts the given asciidoc source to HTML. If the input cannot be parsed
+	 * within the configured parsing timeout the method returns null. The
+	 * source is read in place and must not change during the conversion.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @return the HTML
+	 */
+	public String asciidocToHtml(CharSequence asciidocSource) {
+		return converter.toHtml(asciidocSource);
+	}
+
+	/**
+	 * Converts the given asciidoc source to HTML. If the input cannot be parsed
+	 * within the configured parsing timeout the method returns null.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @return the HTML
+	 */
+	public String asciidocToHtml(char[] asciidocSource) {
+		return converter.toHtml(asciidocSource);
+	}
+
+	/**
+	 * Converts the given asciidoc source to HTML and writes it to the given
+	 * sink in chunks. If the input cannot be parsed within the configured
+	 * parsing timeout nothing is written and the method returns false.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @param out
+	 *            the sink to write the HTML to
+	 * @return true if the HTML was written
+	 * @throws IOException
+	 *             if writing to the sink fails
+	 */
+	public boolean asciidocToHtml(char[] asciidocSource, Appendable out)
+			throws IOException {
+		return converter.toHtml(asciidocSource, out);
+	}
+
+	/**
+	 * Converts the given asciidoc source to HTML and writes it to the given
+	 * stream using the given charset. The stream is flushed but not closed. If
+	 * the input cannot be parsed within the configured parsing timeout nothing
+	 * is written and the method returns false.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @param out
+	 *            the stream to write the HTML to
+	 * @param charset
+	 *            the charset to encode the HTML with
+	 * @return true if the HTML was written
+	 * @throws IOException
+	 *             if writing to the stream fails
+	 */
+	public boolean asciidocToHtml(char[] asciidocSource, OutputStream out,
+			Charset charset) throws IOException {
+		return converter.toHtml(asciidocSource, out, charset);
+	}
+
+	/**
+	 * Converts the given asciidoc file to an HTML file. The input file is
+	 * memory-mapped and decoded lazily while it is parsed, and the HTML is
+	 * written to the output file in chunks, so that the heap does not need to
+	 * hold the source text or the complete HTML. If the input cannot be parsed
+	 * within the configured parsing timeout the output file is not touched
+	 * and the method returns false.
+	 * 
+	 * @param in
+	 *            the asciidoc file to convert
+	 * @param out
+	 *            the HTML file to write, replaced if it exists
+	 * @param charset
+	 *            the charset of both files
+	 * @return true if the HTML was written
+	 * @throws IOException
+	 *             if reading or writing a file fails
+	 */
+	public boolean convertFile(File in, File out, Charset charset)
+			throws IOException {
+		return converter.convertFile(in, out, charset);
+	}
+
+	/**
+	 * Parses the given asciidoc source and returns the root node of the
+	 * generated Abstract Syntax Tree. If the input cannot be parsed within the
+	 * configured parsing timeout the method throws a ParsingTimeoutException.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @return the AST root
+	 */
+	public DocumentNode parseAsciidoc(char[] asciidocSource) {
+		AsciiDocParser parser = pool.borrow();
+		try {
+			return new AsciiDocProcessor(parser).parseAsciidoc(asciidocSource);
+		} finally {
+			pool.release(parser);
+		}
+	}
+
+	/**
+	 * Parses the given asciidoc source and returns the root node of the
+	 * generated Abstract Syntax Tree. If the input cannot be parsed within the
+	 * configured parsing timeout the method throws a ParsingTimeoutException.
+	 * The source is read in place and must not change during parsing.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @return the AST root
+	 */
+	public DocumentNode parseAsciidoc(CharSequence asciidocSource) {
+		AsciiDocParser parser = pool.borrow();
+		try {
+			return new AsciiDocProcessor(parser).parseAsciidoc(asciidocSource);
+		} finally {
+			pool.release(parser);
+		}
+	}
+
+	/**
+	 * Parses the given asciidoc source, splitting it at top-level sections
+	 * that are parsed concurrently on the given executor, and returns the root
+	 * node of the generated Abstract Syntax Tree. If the input cannot be
+	 * parsed within the configured parsing timeout the method throws a
+	 * ParsingTimeoutException. The source is read in place and must not
+	 * change during parsing. The calling thread takes part in the parse, so
+	 * it may be a thread of the given executor.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert
+	 * @param executor
+	 *            the executor to parse the sections on
+	 * @return the AST root
+	 * @see ParallelParser
+	 */
+	public DocumentNode parseAsciidoc(CharSequence asciidocSource,
+			ExecutorService executor) {
+		return new ParallelParser(pool, executor).parse(asciidocSource);
+	}
+
+	/**
+	 * Converts the given asciidoc source to HTML on the given executor.
+	 * 
+	 * Unlike the synchronous methods the returned future does not turn a
+	 * parse exceeding the parse budget into null: get() throws an
+	 * ExecutionException whose cause is the ParsingTimeoutException, telling
+	 * how long the parse ran and where it stopped. Cancelling the future
+	 * stops a running parse at its next budget check, whether or not the
+	 * budget is interruptible, and releases its parser.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to convert, which must not change until
+	 *            the conversion is done
+	 * @param executor
+	 *            the executor to run the conversion on
+	 * @return the future HTML
+	 */
+	public Future<String> asciidocToHtmlAsync(
+			final CharSequence asciidocSource, Executor executor) {
+		checkArgNotNull(asciidocSource, "asciidocSource");
+		checkArgNotNull(executor, "executor");
+		final AtomicReference<Future<String>> self = new AtomicReference<Future<String>>();
+		FutureTask<String> task = new FutureTask<String>(
+				new Callable<String>() {
+					public String call() {
+						Trace trace = listeners.start(asciidocSource
+								.length());
+						return converter.serialize(parse(new SourceInputBuffer(
+								asciidocSource), trace, self.get()), trace);
+					}
+				});
+		self.set(task);
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Registers a listener to be told the metrics of every conversion to
+	 * HTML, whether to a string, a sink or a file, including those of a
+	 * {@link ConversionPipeline} using this processor.
+	 * 
+	 * @param listener
+	 *            the listener to add, which must be thread-safe
+	 */
+	public void addConversionListener(ConversionListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener added with
+	 * {@link #addConversionListener(ConversionListener)}.
+	 * 
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public void removeConversionListener(ConversionListener listener) {
+		listeners.remove(listener);
+	}
+
+	// parses with a pooled parser, telling the listeners about a timeout
+	DocumentNode parse(InputBuffer input, Trace trace, Future<?> future) {
+		AsciiDocParser parser = pool.borrow();
+		parser.setCancellation(future);
+		try {
+			DocumentNode astRoot = parser.parse(input);
+			trace.parsed(parser);
+			return astRoot;
+		} catch (ParsingTimeoutException e) {
+			listeners.timedOut(trace, parser, e);
+			throw e;
+		} finally {
+			parser.setCancellation(null);
+			pool.release(parser);
+		}
+	}
+}
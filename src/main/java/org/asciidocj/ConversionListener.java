@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+/**
+ * Receives the {@link ConversionMetrics} of every conversion of the processor
+ * it is registered on, in the thread that ran the conversion. A listener
+ * registered on a shared processor is called concurrently and must be
+ * thread-safe; it should also be quick, as it delays the caller of the
+ * conversion, and must not throw.
+ * 
+ * @see AsciiDocProcessor#addConversionListener(ConversionListener)
+ * @see ConcurrentAsciiDocProcessor#addConversionListener(ConversionListener)
+ * @see ConversionStats
+ */
+public interface ConversionListener {
+
+	/**
+	 * Called once a source has been converted to HTML or has failed to parse
+	 * within the parse budget.
+	 * 
+	 * @param metrics
+	 *            the metrics of the conversion
+	 */
+	void onConversion(ConversionMetrics metrics);
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.asciidocj.ast.DocumentNode;
+
+/**
+ * The conversion listeners of a processor. Measurements are only turned into
+ * {@link ConversionMetrics}, and the tree is only walked to count its nodes,
+ * if a listener is registered.
+ */
+final class ConversionListeners {
+
+	private final List<ConversionListener> listeners = new CopyOnWriteArrayList<ConversionListener>();
+
+	void add(ConversionListener listener) {
+		listeners.add(listener);
+	}
+
+	void remove(ConversionListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Starts timing the parse of a conversion.
+	 */
+	Trace start(int inputLength) {
+		return new Trace(inputLength);
+	}
+
+	void timedOut(Trace trace, AsciiDocParser parser,
+			ParsingTimeoutException timeout) {
+		if (listeners.isEmpty())
+			return;
+		trace.parsed(parser);
+		fire(new ConversionMetrics(trace.inputLength, -1, trace.parseNanos, 0,
+				trace.steps, Collections.<String, Integer> emptyMap(), timeout));
+	}
+
+	void serialized(Trace trace, DocumentNode astRoot, long outputLength,
+			long serializeStartNanos) {
+		if (listeners.isEmpty())
+			return;
+		long serializeNanos = System.nanoTime() - serializeStartNanos;
+		fire(new ConversionMetrics(trace.inputLength, outputLength,
+				trace.parseNanos, serializeNanos, trace.steps,
+				ConversionMetrics.countNodes(astRoot), null));
+	}
+
+	private void fire(ConversionMetrics metrics) {
+		for (ConversionListener listener : listeners) {
+			listener.onConversion(metrics);
+		}
+	}
+
+	/**
+	 * The parse measurements of a conversion in progress.
+	 */
+	static final class Trace {
+
+		// -1 until known for sources decoded while they are parsed
+		int inputLength;
+		private final long startNanos = System.nanoTime();
+		private long parseNanos;
+		private long steps;
+
+		private Trace(int inputLength) {
+			this.inputLength = inputLength;
+		}
+
+		void parsed(AsciiDocParser parser) {
+			parseNanos = System.nanoTime() - startNanos;
+			steps = parser.getSteps();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.asciidocj.ast.Node;
+
+/**
+ * The measurements of a single conversion as reported to a
+ * {@link ConversionListener}: the size of the source and of the HTML, the
+ * time spent parsing and serializing, the number of parsing steps and the
+ * number of nodes of each type in the tree. A conversion whose parse exceeded
+ * the parse budget or was cancelled has no HTML and no tree.
+ */
+public class ConversionMetrics {
+
+	private final int inputLength;
+	private final long outputLength;
+	private final long parseNanos;
+	private final long serializeNanos;
+	private final long steps;
+	private final Map<String, Integer> nodeCounts;
+	private final ParsingTimeoutException timeout;
+
+	public ConversionMetrics(int inputLength, long outputLength,
+			long parseNanos, long serializeNanos, long steps,
+			Map<String, Integer> nodeCounts, ParsingTimeoutException timeout) {
+		this.inputLength = inputLength;
+		this.outputLength = outputLength;
+		this.parseNanos = parseNanos;
+		this.serializeNanos = serializeNanos;
+		this.steps = steps;
+		this.nodeCounts = Collections.unmodifiableMap(nodeCounts);
+		this.timeout = timeout;
+	}
+
+	/**
+	 * @return the number of characters of the asciidoc source, -1 if a file
+	 *         conversion was stopped before the length of the file was known
+	 */
+	public int getInputLength() {
+		return inputLength;
+	}
+
+	/**
+	 * @return the number of characters of the HTML, -1 if the parse was
+	 *         stopped
+	 */
+	public long getOutputLength() {
+		return outputLength;
+	}
+
+	/**
+	 * @param unit
+	 *            the unit of the returned time
+	 * @return the time spent parsing, up to the point the parse was stopped
+	 */
+	public long getParseTime(TimeUnit unit) {
+		return unit.convert(parseNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param unit
+	 *            the unit of the returned time
+	 * @return the time spent serializing the tree to HTML
+	 */
+	public long getSerializeTime(TimeUnit unit) {
+		return unit.convert(serializeNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return the number of inline elements the parser tried, the unit of
+	 *         the step limit of the {@link ParseBudget}
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * @return the number of nodes in the tree by the simple name of their
+	 *         class, empty if the parse timed out
+	 */
+	public Map<String, Integer> getNodeCounts() {
+		return nodeCounts;
+	}
+
+	/**
+	 * @return true if the source could not be parsed within the parse budget
+	 */
+	public boolean isTimedOut() {
+		return timeout != null && !isCancelled();
+	}
+
+	/**
+	 * @return the exception that stopped the parse, null if the source was
+	 *         converted, a ParsingCancelledException if it was cancelled
+	 */
+	public ParsingTimeoutException getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * @return true if the parse was cancelled, by an interrupt or by
+	 *         cancelling its future
+	 */
+	public boolean isCancelled() {
+		return timeout instanceof ParsingCancelledException;
+	}
+
+	@Override
+	public String toString() {
+		return "ConversionMetrics [" + inputLength + " chars "
+				+ (timeout == null ? "to " + outputLength + " chars"
+						: isCancelled() ? "cancelled" : "timed out")
+				+ ", parse " + getParseTime(TimeUnit.MICROSECONDS)
+				+ " us, serialize "
+				+ getSerializeTime(TimeUnit.MICROSECONDS) + " us, " + steps
+				+ " steps]";
+	}
+
+	static Map<String, Integer> countNodes(Node root) {
+		Map<String, Integer> counts = new TreeMap<String, Integer>();
+		countNodes(root, counts);
+		return counts;
+	}
+
+	private static void countNodes(Node node, Map<String, Integer> counts) {
+		String type = node.getClass().getSimpleName();
+		Integer count = counts.get(type);
+		counts.put(type, count == null ? 1 : count + 1);
+		for (Node child : node.getChildren()) {
+			countNodes(child, counts);
+		}
+	}
+}
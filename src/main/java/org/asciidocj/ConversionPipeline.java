@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.parboiled.common.Preconditions.checkArgNotNull;
+import static org.parboiled.common.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.asciidocj.ConversionListeners.Trace;
+import org.asciidocj.ast.DocumentNode;
+
+/**
+ * A non-blocking conversion stage between a publisher of asciidoc sources and
+ * a subscriber of their HTML.
+ * 
+ * Each source is parsed on the parse executor and its tree serialized on the
+ * serialize executor, with at most the configured number of tasks of each
+ * stage running at a time. At most bufferSize sources are requested from
+ * upstream ahead of what the downstream subscriber has received, so memory
+ * stays bounded however fast sources arrive. Results are published in the
+ * order of their sources.
+ * 
+ * A source that cannot be parsed within the parse budget is published as a
+ * failed {@link Result} and does not end the stream. Other failures cancel the
+ * upstream subscription and are passed on with onError.
+ * 
+ * A pipeline is used once: subscribe the downstream subscriber first, then
+ * subscribe the pipeline to the source publisher.
+ */
+public class ConversionPipeline implements
+		Flow.Processor<CharSequence, ConversionPipeline.Result> {
+
+	/**
+	 * The outcome of converting one source.
+	 */
+	public static class Result {
+
+		private final CharSequence source;
+		private final String html;
+		private final ParsingTimeoutException error;
+
+		Result(CharSequence source, String html, ParsingTimeoutException error) {
+			this.source = source;
+			this.html = html;
+			this.error = error;
+		}
+
+		public CharSequence getSource() {
+			return source;
+		}
+
+		/**
+		 * @return the HTML, null if the source could not be parsed in time
+		 */
+		public String getHtml() {
+			return html;
+		}
+
+		/**
+		 * @return the exception the parse was aborted with, null on success
+		 */
+		public ParsingTimeoutException getError() {
+			return error;
+		}
+
+		public boolean isSuccess() {
+			return error == null;
+		}
+	}
+
+	// a source on its way through the stages
+	private static class Item {
+
+		final long sequence;
+		final CharSequence source;
+		Trace trace;
+		DocumentNode tree;
+		Result result;
+
+		Item(long sequence, CharSequence source) {
+			this.sequence = sequence;
+			this.source = source;
+		}
+	}
+
+	private final ConcurrentAsciiDocProcessor processor;
+	private final ExecutorService parseExecutor;
+	private final int parseParallelism;
+	private final ExecutorService serializeExecutor;
+	private final int serializeParallelism;
+	private final int bufferSize;
+
+	// all state below is guarded by this
+	private Flow.Subscription upstream;
+	private Flow.Subscriber<? super Result> downstream;
+	private long requested;
+	private boolean cancelled;
+	private boolean upstreamComplete;
+	private Throwable failure;
+	private boolean terminated;
+	private boolean draining;
+
+	private long received;
+	private long published;
+	// the items between published and received, indexed by sequence
+	private final Item[] window;
+	private final Queue<Item> parseQueue = new ArrayDeque<Item>();
+	private final Queue<Item> serializeQueue = new ArrayDeque<Item>();
+	private int parsing;
+	private int serializing;
+
+	/**
+	 * @param processor
+	 *            the processor whose parser pool and serializers are used
+	 * @param parseExecutor
+	 *            the executor running the parse tasks
+	 * @param parseParallelism
+	 *            the maximum number of parse tasks running at a time
+	 * @param serializeExecutor
+	 *            the executor running the serialize tasks
+	 * @param serializeParallelism
+	 *            the maximum number of serialize tasks running at a time
+	 * @param bufferSize
+	 *            the maximum number of sources requested ahead of the
+	 *            downstream subscriber
+	 */
+	public ConversionPipeline(ConcurrentAsciiDocProcessor processor,
+			ExecutorService parseExecutor, int parseParallelism,
+			ExecutorService serializeExecutor, int serializeParallelism,
+			int bufferSize) {
+		checkArgNotNull(processor, "processor");
+		checkArgNotNull(parseExecutor, "parseExecutor");
+		checkArgNotNull(serializeExecutor, "serializeExecutor");
+		checkArgument(parseParallelism > 0 && serializeParallelism > 0
+				&& bufferSize > 0);
+		this.processor = processor;
+		this.parseExecutor = parseExecutor;
+		this.parseParallelism = parseParallelism;
+		this.serializeExecutor = serializeExecutor;
+		this.serializeParallelism = serializeParallelism;
+		this.bufferSize = bufferSize;
+		this.window = new Item[bufferSize];
+	}
+
+	public void subscribe(Flow.Subscriber<? super Result> subscriber) {
+		checkArgNotNull(subscriber, "subscriber");
+		synchronized (this) {
+			if (downstream != null)
+				throw new IllegalStateException(
+						"A pipeline publishes to a single subscriber");
+			downstream = subscriber;
+		}
+		subscriber.onSubscribe(new Flow.Subscription() {
+			public void request(long n) {
+				requestResults(n);
+			}
+
+			public void cancel() {
+				cancelResults();
+			}
+		});
+		drain();
+	}
+
+	public void onSubscribe(Flow.Subscription subscription) {
+		checkArgNotNull(subscription, "subscription");
+		synchronized (this) {
+			if (upstream != null || cancelled) {
+				subscription.cancel();
+				return;
+			}
+			upstream = subscription;
+		}
+		subscription.request(bufferSize);
+	}
+
+	public void onNext(CharSequence source) {
+		checkArgNotNull(source, "source");
+		synchronized (this) {
+			if (terminated || cancelled)
+				return;
+			if (received - published == bufferSize) {
+				fail(new IllegalStateException(
+						"More sources published than requested"));
+			} else {
+				Item item = new Item(received++, source);
+				window[slot(item.sequence)] = item;
+				parseQueue.add(item);
+				schedule();
+			}
+		}
+		drain();
+	}
+
+	public void onError(Throwable throwable) {
+		synchronized (this) {
+			if (failure == null)
+				failure = throwable;
+		}
+		drain();
+	}
+
+	public void onComplete() {
+		synchronized (this) {
+			upstreamComplete = true;
+		}
+		drain();
+	}
+
+	private void requestResults(long n) {
+		synchronized (this) {
+			if (n <= 0)
+				fail(new IllegalArgumentException(
+						"The number of requested results must be positive"));
+			else
+				requested = requested + n < 0 ? Long.MAX_VALUE : requested
+						+ n;
+		}
+		drain();
+	}
+
+	private void cancelResults() {
+		Flow.Subscription subscription;
+		synchronized (this) {
+			cancelled = true;
+			subscription = upstream;
+			parseQueue.clear();
+			serializeQueue.clear();
+		}
+		if (subscription != null)
+			subscription.cancel();
+	}
+
+	// starts as many queued tasks as the parallelism of each stage allows, a
+	// task an executor rejects fails the pipeline
+	private void schedule() {
+		while (parsing < parseParallelism && !parseQueue.isEmpty()) {
+			final Item item = parseQueue.remove();
+			if (!execute(parseExecutor, new Runnable() {
+				public void run() {
+					parse(item);
+				}
+			}))
+				return;
+			parsing++;
+		}
+		while (serializing < serializeParallelism && !serializeQueue.isEmpty()) {
+			final Item item = serializeQueue.remove();
+			if (!execute(serializeExecutor, new Runnable() {
+				public void run() {
+					serialize(item);
+				}
+			}))
+				return;
+			serializing++;
+		}
+	}
+
+	private boolean execute(ExecutorService executor, Runnable task) {
+		try {
+			executor.execute(task);
+			return true;
+		} catch (RejectedExecutionException e) {
+			fail(e);
+			parseQueue.clear();
+			serializeQueue.clear();
+			return false;
+		}
+	}
+
+	private void parse(Item item) {
+		DocumentNode tree = null;
+		ParsingTimeoutException timeout = null;
+		RuntimeException error = null;
+		try {
+			item.trace = processor.converter.listeners.start(item.source
+					.length());
+			tree = processor.converter.parse(new SourceInputBuffer(
+					item.source), item.trace);
+		} catch (ParsingTimeoutException e) {
+			timeout = e;
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		synchronized (this) {
+			parsing--;
+			if (error != null)
+				fail(error);
+			else if (timeout != null)
+				item.result = new Result(item.source, null, timeout);
+			else {
+				item.tree = tree;
+				serializeQueue.add(item);
+			}
+			if (!cancelled && !terminated)
+				schedule();
+		}
+		drain();
+	}
+
+	private void serialize(Item item) {
+		String html = null;
+		RuntimeException error = null;
+		try {
+			html = processor.converter.serialize(item.tree, item.trace);
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		synchronized (this) {
+			serializing--;
+			item.tree = null;
+			if (error != null)
+				fail(error);
+			else
+				item.result = new Result(item.source, html, null);
+			if (!cancelled && !terminated)
+				schedule();
+		}
+		drain();
+	}
+
+	// records a failure to be signalled downstream, must hold the lock
+	private void fail(Throwable throwable) {
+		if (failure == null)
+			failure = throwable;
+	}
+
+	// publishes the completed results in order and the terminal signal, from
+	// one thread at a time
+	private void drain() {
+		Flow.Subscriber<? super Result> subscriber;
+		synchronized (this) {
+			if (draining || downstream == null)
+				return;
+			draining = true;
+			subscriber = downstream;
+		}
+		while (true) {
+			Result result = null;
+			Throwable error = null;
+			boolean complete = false;
+			Flow.Subscription subscription = null;
+			synchronized (this) {
+				if (terminated || cancelled) {
+					draining = false;
+					return;
+				}
+				Item next = published < received ? window[slot(published)]
+						: null;
+				if (failure != null) {
+					error = failure;
+					terminated = true;
+					subscription = upstream;
+				} else if (next != null && next.result != null && requested > 0) {
+					result = next.result;
+					window[slot(published++)] = null;
+					requested--;
+					subscription = upstream;
+				} else if (upstreamComplete && published == received) {
+					complete = true;
+					terminated = true;
+				} else {
+					draining = false;
+					return;
+				}
+			}
+			if (error != null) {
+				if (subscription != null)
+					subscription.cancel();
+				subscriber.onError(error);
+			} else if (complete)
+				subscriber.onComplete();
+			else {
+				subscriber.onNext(result);
+				if (subscription != null)
+					subscription.request(1); // refill the freed slot
+			}
+		}
+	}
+
+	private int slot(long sequence) {
+		return (int) (sequence % bufferSize);
+	}
+}
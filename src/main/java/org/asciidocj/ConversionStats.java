@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A {@link ConversionListener} summing up the metrics of all conversions of
+ * the processors it is registered on, which can be exposed as an MXBean:
+ * 
+ * <pre>
+ * ConversionStats stats = new ConversionStats();
+ * processor.addConversionListener(stats);
+ * stats.register(new ObjectName(&quot;org.asciidocj:type=ConversionStats&quot;));
+ * </pre>
+ */
+public class ConversionStats implements ConversionListener,
+		ConversionStatsMXBean {
+
+	private final AtomicLong conversions = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong cancellations = new AtomicLong();
+	private final AtomicLong parseNanos = new AtomicLong();
+	private final AtomicLong maxParseNanos = new AtomicLong();
+	private final AtomicLong serializeNanos = new AtomicLong();
+	private final AtomicLong inputChars = new AtomicLong();
+	private final AtomicLong outputChars = new AtomicLong();
+	private final AtomicLong steps = new AtomicLong();
+	private final ConcurrentMap<String, AtomicLong> nodeCounts = new ConcurrentHashMap<String, AtomicLong>();
+
+	public void onConversion(ConversionMetrics metrics) {
+		conversions.incrementAndGet();
+		if (metrics.isTimedOut())
+			timeouts.incrementAndGet();
+		if (metrics.isCancelled())
+			cancellations.incrementAndGet();
+		long parse = metrics.getParseTime(TimeUnit.NANOSECONDS);
+		parseNanos.addAndGet(parse);
+		long max;
+		do {
+			max = maxParseNanos.get();
+		} while (parse > max && !maxParseNanos.compareAndSet(max, parse));
+		serializeNanos.addAndGet(metrics
+				.getSerializeTime(TimeUnit.NANOSECONDS));
+		if (metrics.getInputLength() > 0)
+			inputChars.addAndGet(metrics.getInputLength());
+		if (metrics.getTimeout() == null)
+			outputChars.addAndGet(metrics.getOutputLength());
+		steps.addAndGet(metrics.getSteps());
+		for (Map.Entry<String, Integer> entry : metrics.getNodeCounts()
+				.entrySet()) {
+			AtomicLong count = nodeCounts.get(entry.getKey());
+			if (count == null) {
+				AtomicLong added = new AtomicLong();
+				count = nodeCounts.putIfAbsent(entry.getKey(), added);
+				if (count == null)
+					count = added;
+			}
+			count.addAndGet(entry.getValue());
+		}
+	}
+
+	public long getConversionCount() {
+		return conversions.get();
+	}
+
+	public long getTimeoutCount() {
+		return timeouts.get();
+	}
+
+	public long getCancellationCount() {
+		return cancellations.get();
+	}
+
+	public long getParseTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(parseNanos.get());
+	}
+
+	public long getMaxParseTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxParseNanos.get());
+	}
+
+	public long getSerializeTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(serializeNanos.get());
+	}
+
+	public long getInputChars() {
+		return inputChars.get();
+	}
+
+	public long getOutputChars() {
+		return outputChars.get();
+	}
+
+	public long getSteps() {
+		return steps.get();
+	}
+
+	public Map<String, Long> getNodeCounts() {
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> entry : nodeCounts.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().get());
+		}
+		return counts;
+	}
+
+	public void reset() {
+		conversions.set(0);
+		timeouts.set(0);
+		cancellations.set(0);
+		parseNanos.set(0);
+		maxParseNanos.set(0);
+		serializeNanos.set(0);
+		inputChars.set(0);
+		outputChars.set(0);
+		steps.set(0);
+		nodeCounts.clear();
+	}
+
+	/**
+	 * Registers these statistics with the platform MBean server.
+	 * 
+	 * @param name
+	 *            the name to register them under
+	 * @throws JMException
+	 *             if the name is taken or the registration fails
+	 */
+	public void register(ObjectName name) throws JMException {
+		register(ManagementFactory.getPlatformMBeanServer(), name);
+	}
+
+	/**
+	 * Registers these statistics with the given MBean server.
+	 * 
+	 * @param server
+	 *            the server to register them with
+	 * @param name
+	 *            the name to register them under
+	 * @throws JMException
+	 *             if the name is taken or the registration fails
+	 */
+	public void register(MBeanServer server, ObjectName name)
+			throws JMException {
+		server.registerMBean(this, name);
+	}
+
+	@Override
+	public String toString() {
+		return "ConversionStats [" + getConversionCount() + " conversions, "
+				+ getTimeoutCount() + " timeouts, " + getCancellationCount()
+				+ " cancellations, parse "
+				+ getParseTimeMillis() + " ms, serialize "
+				+ getSerializeTimeMillis() + " ms]";
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link ConversionStats}.
+ */
+public interface ConversionStatsMXBean {
+
+	/**
+	 * @return the number of conversions, including those that timed out or
+	 *         were cancelled
+	 */
+	long getConversionCount();
+
+	/**
+	 * @return the number of conversions whose parse exceeded the parse budget
+	 */
+	long getTimeoutCount();
+
+	/**
+	 * @return the number of conversions whose parse was cancelled
+	 */
+	long getCancellationCount();
+
+	/**
+	 * @return the total time spent parsing
+	 */
+	long getParseTimeMillis();
+
+	/**
+	 * @return the longest time spent parsing a single source
+	 */
+	long getMaxParseTimeMillis();
+
+	/**
+	 * @return the total time spent serializing trees to HTML
+	 */
+	long getSerializeTimeMillis();
+
+	/**
+	 * @return the total number of characters of the asciidoc sources
+	 */
+	long getInputChars();
+
+	/**
+	 * @return the total number of characters of the HTML
+	 */
+	long getOutputChars();
+
+	/**
+	 * @return the total number of inline elements the parser tried
+	 */
+	long getSteps();
+
+	/**
+	 * @return the total number of nodes by the simple name of their class
+	 */
+	Map<String, Long> getNodeCounts();
+
+	/**
+	 * Sets all statistics back to zero.
+	 */
+	void reset();
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.asciidocj;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+import org.asciidocj.ConversionListeners.Trace;
+import org.asciidocj.ast.DocumentNode;
+import org.parboiled.buffers.InputBuffer;
+
+/**
+ * The conversion steps shared by {@link AsciiDocProcessor} and
+ * {@link ConcurrentAsciiDocProcessor}, which only differ in how they get a
+ * parser. Every conversion is told to the listeners of the processor.
+ */
+abstract class Converter {
+
+	final ConversionListeners listeners;
+	private final ToHtmlSerializerPool serializers;
+
+	Converter(ConversionListeners listeners, ToHtmlSerializerPool serializers) {
+		this.listeners = listeners;
+		this.serializers = serializers;
+	}
+
+	/**
+	 * Parses the given input, telling the listeners about a
+	 * ParsingTimeoutException before throwing it.
+	 */
+	abstract DocumentNode parse(InputBuffer input, Trace trace);
+
+	/**
+	 * @see AsciiDocProcessor#asciidocToHtml(CharSequence)
+	 */
+	String toHtml(CharSequence asciidocSource) {
+		try {
+			return toHtml(new SourceInputBuffer(asciidocSource),
+					listeners.start(asciidocSource.length()));
+		} catch (ParsingTimeoutException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @see AsciiDocProcessor#asciidocToHtml(char[])
+	 */
+	String toHtml(char[] asciidocSource) {
+		try {
+			return toHtml(new SourceInputBuffer(asciidocSource),
+					listeners.start(asciidocSource.length));
+		} catch (ParsingTimeoutException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Converts the given input to HTML, throwing a ParsingTimeoutException
+	 * if it cannot be parsed within the parse budget.
+	 */
+	String toHtml(InputBuffer input, Trace trace) {
+		return serialize(parse(input, trace), trace);
+	}
+
+	/**
+	 * @see AsciiDocProcessor#asciidocToHtml(char[], Appendable)
+	 */
+	boolean toHtml(char[] asciidocSource, Appendable out) throws IOException {
+		Trace trace = listeners.start(asciidocSource.length);
+		DocumentNode astRoot;
+		try {
+			astRoot = parse(new SourceInputBuffer(asciidocSource), trace);
+		} catch (ParsingTimeoutException e) {
+			return false;
+		}
+		serialize(astRoot, trace, out);
+		return true;
+	}
+
+	/**
+	 * @see AsciiDocProcessor#asciidocToHtml(char[], OutputStream, Charset)
+	 */
+	boolean toHtml(char[] asciidocSource, OutputStream out, Charset charset)
+			throws IOException {
+		Writer writer = new OutputStreamWriter(out, charset);
+		boolean written = toHtml(asciidocSource, writer);
+		writer.flush();
+		return written;
+	}
+
+	/**
+	 * @see AsciiDocProcessor#convertFile(File, File, Charset)
+	 */
+	boolean convertFile(File in, File out, Charset charset) throws IOException {
+		try {
+			convert(in, out, charset);
+			return true;
+		} catch (ParsingTimeoutException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Converts the given asciidoc file to an HTML file like
+	 * {@link #convertFile(File, File, Charset)}, but throws the
+	 * ParsingTimeoutException telling why and where the parse stopped if the
+	 * input cannot be parsed within the parse budget.
+	 */
+	void convert(File in, File out, Charset charset) throws IOException {
+		Trace trace = listeners.start(-1);
+		MappedFileInputBuffer input = new MappedFileInputBuffer(in, charset);
+		DocumentNode astRoot = parse(input, trace);
+		// known now that the parse has decoded the whole file
+		trace.inputLength = input.getSourceLength();
+		Writer writer = Channels.newWriter(
+				new FileOutputStream(out).getChannel(), charset.newEncoder(),
+				-1);
+		try {
+			serialize(astRoot, trace, writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	// serializes with the current thread's pooled serializer, whose buffer
+	// has usually grown to the size of the output already
+	String serialize(DocumentNode astRoot, Trace trace) {
+		long start = System.nanoTime();
+		String html;
+		ToHtmlSerializer serializer = serializers.borrow(trace.inputLength);
+		try {
+			html = serializer.toHtml(astRoot);
+		} finally {
+			serializers.release(serializer);
+		}
+		listeners.serialized(trace, astRoot, html.length(), start);
+		return html;
+	}
+
+	// serializes to the given sink in chunks
+	void serialize(DocumentNode astRoot, Trace trace, Appendable out)
+			throws IOException {
+		long start = System.nanoTime();
+		long written = new ToHtmlSerializer().toHtml(astRoot, out);
+		listeners.serialized(trace, astRoot, written, start);
+	}
+}
@@ -18,98 +18,298 @@
 
 package org.asciidocj;
 
-import java.util.Random;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
 
 import org.parboiled.common.StringUtils;
 
 /**
  * Static class holding simple HTML encoding logic.
+ * 
+ * The characters to encode are looked up in a table, and the runs of
+ * characters between them are copied in bulk.
  */
 public class FastEncoder {
 
-	private static Random random = new Random(0x2626);
+	// the encoding of each ASCII character, null if it is output as is
+	private static final String[] ENTITIES = new String[128];
+
+	static {
+		ENTITIES['&'] = "&amp;";
+		ENTITIES['<'] = "&lt;";
+		ENTITIES['>'] = "&gt;";
+		ENTITIES['"'] = "&quot;";
+		ENTITIES['\''] = "&#39;";
+	}
+
+	private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+	// the most chars of a String encoded from one array
+	private static final int CHUNK_SIZE = 1024;
 
 	public static String encode(String string) {
-		if (StringUtils.isNotEmpty(string)) {
-			for (int i = 0; i < string.length(); i++) {
-				if (encode(string.charAt(i)) != null) {
-					// we have at least one character that needs encoding, so do
-					// it one by one
-					StringBuilder sb = new StringBuilder();
-					for (i = 0; i < string.length(); i++) {
-						char c = string.charAt(i);
-						String encoded = encode(c);
-						if (encoded != null)
-							sb.append(encoded);
-						else
-							sb.append(c);
-					}
-					return sb.toString();
-				}
-			}
-			return string;
-		} else
+		if (StringUtils.isEmpty(string))
 			return "";
+		int length = string.length();
+		int first = indexOfEntity(string, 0, length);
+		if (first == length)
+			return string;
+		StringBuilder sb = new StringBuilder(length + 16);
+		sb.append(string, 0, first);
+		encode(string, first, length, sb);
+		return sb.toString();
 	}
 
 	public static void encode(String string, StringBuilder sb) {
-		if (StringUtils.isNotEmpty(string)) {
-			for (int i = 0; i < string.length(); i++) {
-				if (encode(string.charAt(i)) != null) {
-					// we have at least one character that needs encoding, so do
-					// it one by one
-					for (i = 0; i < string.length(); i++) {
-						char c = string.charAt(i);
-						String encoded = encode(c);
-						if (encoded != null)
-							sb.append(encoded);
-						else
-							sb.append(c);
-					}
-					return;
-				}
+		if (string != null)
+			encode(string, 0, string.length(), sb);
+	}
+
+	/**
+	 * Encodes a range of the given sequence, copying the characters between
+	 * the ones that need encoding in one go.
+	 */
+	public static void encode(CharSequence sequence, int start, int end,
+			StringBuilder sb) {
+		if (sequence instanceof String) {
+			encode((String) sequence, start, end, sb);
+			return;
+		}
+		sb.ensureCapacity(sb.length() + end - start);
+		int run = start;
+		for (int i = start; i < end; i++) {
+			char c = sequence.charAt(i);
+			if (c < 128 && ENTITIES[c] != null) {
+				sb.append(sequence, run, i).append(ENTITIES[c]);
+				run = i + 1;
+			}
+		}
+		sb.append(sequence, run, end);
+	}
+
+	// StringBuilder.append(CharSequence, int, int) copies char by char
+	// before JDK 9, so Strings are copied into an array in chunks and
+	// encoded from there
+	private static void encode(String string, int start, int end,
+			StringBuilder sb) {
+		char[] chunk = new char[Math.min(end - start, CHUNK_SIZE)];
+		for (int from = start; from < end; from += chunk.length) {
+			int to = Math.min(from + chunk.length, end);
+			string.getChars(from, to, chunk, 0);
+			encode(chunk, 0, to - from, sb);
+		}
+	}
+
+	/**
+	 * Encodes a range of the given array, copying the characters between the
+	 * ones that need encoding in one go.
+	 */
+	public static void encode(char[] chars, int start, int end,
+			StringBuilder sb) {
+		sb.ensureCapacity(sb.length() + end - start);
+		int run = start;
+		for (int i = start; i < end; i++) {
+			char c = chars[i];
+			if (c < 128 && ENTITIES[c] != null) {
+				// markup often has entities next to each other
+				if (i > run)
+					sb.append(chars, run, i - run);
+				sb.append(ENTITIES[c]);
+				run = i + 1;
+			}
+		}
+		sb.append(chars, run, end - run);
+	}
+
+	/**
+	 * Encodes a range of the given sequence into the given sink. Writers,
+	 * StringBuilders and CharBuffers are written to without intermediate
+	 * copies of the unencoded runs.
+	 * 
+	 * @throws IOException
+	 *             if the sink fails
+	 */
+	public static void encode(CharSequence sequence, int start, int end,
+			Appendable out) throws IOException {
+		if (out instanceof StringBuilder) {
+			encode(sequence, start, end, (StringBuilder) out);
+			return;
+		}
+		int run = start;
+		for (int i = start; i < end; i++) {
+			char c = sequence.charAt(i);
+			if (c < 128 && ENTITIES[c] != null) {
+				appendRun(sequence, run, i, out);
+				out.append(ENTITIES[c]);
+				run = i + 1;
+			}
+		}
+		appendRun(sequence, run, end, out);
+	}
+
+	/**
+	 * Encodes a range of the given array into the given sink.
+	 * 
+	 * @throws IOException
+	 *             if the sink fails
+	 */
+	public static void encode(char[] chars, int start, int end, Appendable out)
+			throws IOException {
+		if (out instanceof StringBuilder) {
+			encode(chars, start, end, (StringBuilder) out);
+			return;
+		}
+		int run = start;
+		for (int i = start; i < end; i++) {
+			char c = chars[i];
+			if (c < 128 && ENTITIES[c] != null) {
+				appendRun(chars, run, i, out);
+				out.append(ENTITIES[c]);
+				run = i + 1;
 			}
-			sb.append(string);
 		}
+		appendRun(chars, run, end, out);
 	}
 
 	public static String encode(char c) {
-		switch (c) {
-		case '&':
-			return "&amp;";
-		case '<':
-			return "&lt;";
-		case '>':
-			return "&gt;";
-		case '"':
-			return "&quot;";
-		case '\'':
-			return "&#39;";
+		return c < 128 ? ENTITIES[c] : null;
+	}
+
+	// returns the index of the first character to encode, end if there is
+	// none
+	private static int indexOfEntity(CharSequence sequence, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = sequence.charAt(i);
+			if (c < 128 && ENTITIES[c] != null)
+				return i;
 		}
-		return null;
+		return end;
 	}
 
+	private static void appendRun(CharSequence sequence, int start, int end,
+			Appendable out) throws IOException {
+		if (start == end)
+			return;
+		if (out instanceof Writer && sequence instanceof String)
+			// Writer.append would copy the range into a String first
+			((Writer) out).write((String) sequence, start, end - start);
+		else
+			out.append(sequence, start, end);
+	}
+
+	private static void appendRun(char[] chars, int start, int end,
+			Appendable out) throws IOException {
+		if (start == end)
+			return;
+		if (out instanceof Writer)
+			((Writer) out).write(chars, start, end - start);
+		else if (out instanceof CharBuffer)
+			((CharBuffer) out).put(chars, start, end - start);
+		else
+			out.append(CharBuffer.wrap(chars), start, end);
+	}
+
+	/**
+	 * Obfuscates the given email address, seeding the choice of encodings
+	 * with the address itself.
+	 * 
+	 * @see #obfuscate(CharSequence, long, Appendable)
+	 */
 	public static String obfuscate(String email) {
-		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < email.length(); i++) {
+		return obfuscate(email, email.hashCode());
+	}
+
+	/**
+	 * @see #obfuscate(CharSequence, long, Appendable)
+	 */
+	public static String obfuscate(String email, long seed) {
+		StringBuilder sb = new StringBuilder(email.length() * 6);
+		obfuscate(email, seed, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * @see #obfuscate(CharSequence, long, Appendable)
+	 */
+	public static void obfuscate(CharSequence email, long seed,
+			StringBuilder sb) {
+		try {
+			obfuscate(email, seed, (Appendable) sb);
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // never thrown
+		}
+	}
+
+	/**
+	 * Obfuscates the given email address by writing each of its characters
+	 * as a decimal or hexadecimal character reference or as is. The choice
+	 * is derived from the seed and the position of the character only, so
+	 * the same address and seed always give the same output regardless of
+	 * the thread or order in which documents are rendered, which keeps
+	 * cached output reproducible.
+	 * 
+	 * @param email
+	 *            the address to obfuscate
+	 * @param seed
+	 *            the seed, for instance derived from the document
+	 * @param out
+	 *            the sink to write to
+	 * @throws IOException
+	 *             if the sink fails
+	 */
+	public static void obfuscate(CharSequence email, long seed, Appendable out)
+			throws IOException {
+		int length = email.length();
+		for (int i = 0; i < length; i++) {
 			char c = email.charAt(i);
-			switch (random.nextInt(5)) {
+			int codePoint = c;
+			if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(email.charAt(i + 1)))
+				codePoint = Character.toCodePoint(c, email.charAt(++i));
+			switch ((int) ((mix(seed + i) >>> 1) % 5)) {
 			case 0:
 			case 1:
-				sb.append("&#").append((int) c).append(';');
+				out.append("&#");
+				appendDigits(codePoint, 10, out);
+				out.append(';');
 				break;
 			case 2:
 			case 3:
-				sb.append("&#x").append(Integer.toHexString(c)).append(';');
+				out.append("&#x");
+				appendDigits(codePoint, 16, out);
+				out.append(';');
 				break;
 			case 4:
-				String encoded = encode(c);
+				String encoded = codePoint < 128 ? ENTITIES[codePoint] : null;
 				if (encoded != null)
-					sb.append(encoded);
+					out.append(encoded);
+				else if (codePoint == c)
+					out.append(c);
 				else
-					sb.append(c);
+					out.append(email.charAt(i - 1)).append(email.charAt(i));
 			}
 		}
-		return sb.toString();
 	}
-}
\ No newline at end of file
+
+	// the SplitMix64 finalizer, giving well distributed bits for
+	// consecutive inputs
+	private static long mix(long z) {
+		z *= 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	// appends the digits of a non-negative number without creating a String
+	private static void appendDigits(int value, int radix, Appendable out)
+			throws IOException {
+		int divisor = 1;
+		while (value / divisor >= radix)
+			divisor *= radix;
+		for (; divisor > 0; divisor /= radix) {
+			out.append(DIGITS[value / divisor]);
+			value %= divisor;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.asciidocj.ast.Node;
+import org.parboiled.Rule;
+import org.parboiled.buffers.DefaultInputBuffer;
+import org.parboiled.buffers.InputBuffer;
+import org.parboiled.errors.ParseError;
+import org.parboiled.parserunners.BasicParseRunner;
+import org.parboiled.parserunners.ParseRunner;
+import org.parboiled.parserunners.ReportingParseRunner;
+import org.parboiled.support.ParsingResult;
+import org.parboiled.support.ValueStack;
+
+/**
+ * A {@link ParseRunnerProvider} for production use. It keeps one
+ * {@link BasicParseRunner} per rule and reuses it for every parse, falling
+ * back to a {@link ReportingParseRunner} only if the input does not match,
+ * in order to locate and report the errors.
+ * 
+ * Since the runners are reused, an instance must only serve a single parser
+ * and a {@link ParsingResult} is only valid until the next parse.
+ */
+public class FastParseRunnerProvider implements ParseRunnerProvider {
+
+	private final Map<Rule, ParseRunner<Node>> runners = new IdentityHashMap<Rule, ParseRunner<Node>>();
+
+	public ParseRunner<Node> get(Rule rule) {
+		ParseRunner<Node> runner = runners.get(rule);
+		if (runner == null) {
+			runner = new FallbackParseRunner(rule);
+			runners.put(rule, runner);
+		}
+		return runner;
+	}
+
+	private static class FallbackParseRunner implements ParseRunner<Node> {
+
+		private final Rule rule;
+		private final BasicParseRunner<Node> basic;
+		// handed on to the reporting runner, null for its defaults
+		private List<ParseError> parseErrors;
+		private ValueStack<Node> valueStack;
+
+		FallbackParseRunner(Rule rule) {
+			this.rule = rule;
+			this.basic = new BasicParseRunner<Node>(rule);
+		}
+
+		public ParseRunner<Node> withParseErrors(List<ParseError> parseErrors) {
+			basic.withParseErrors(parseErrors);
+			this.parseErrors = parseErrors;
+			return this;
+		}
+
+		public ParseRunner<Node> withValueStack(ValueStack<Node> valueStack) {
+			basic.withValueStack(valueStack);
+			this.valueStack = valueStack;
+			return this;
+		}
+
+		public ParsingResult<Node> run(String input) {
+			return run(input.toCharArray());
+		}
+
+		public ParsingResult<Node> run(char[] input) {
+			return run(new DefaultInputBuffer(input));
+		}
+
+		public ParsingResult<Node> run(InputBuffer input) {
+			ParsingResult<Node> result = basic.run(input);
+			if (result.matched)
+				return result;
+			ReportingParseRunner<Node> reporting = new ReportingParseRunner<Node>(
+					rule);
+			if (parseErrors != null)
+				reporting.withParseErrors(parseErrors);
+			if (valueStack != null)
+				reporting.withValueStack(valueStack);
+			return reporting.run(input);
+		}
+	}
+}
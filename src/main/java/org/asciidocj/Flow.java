@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+/**
+ * The interfaces of a reactive stream with demand-driven flow control,
+ * declared like those of java.util.concurrent.Flow, which is not available
+ * on the Java versions this library supports. Adapting them to the JDK
+ * interfaces only takes delegating each method.
+ */
+public final class Flow {
+
+	private Flow() {
+	}
+
+	/**
+	 * A producer of items for a single subscriber.
+	 */
+	public interface Publisher<T> {
+
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * A receiver of items. Its methods are called one at a time, and onNext
+	 * at most as often as items have been requested.
+	 */
+	public interface Subscriber<T> {
+
+		void onSubscribe(Subscription subscription);
+
+		void onNext(T item);
+
+		void onError(Throwable throwable);
+
+		void onComplete();
+	}
+
+	/**
+	 * The link between a publisher and its subscriber.
+	 */
+	public interface Subscription {
+
+		/**
+		 * Adds n, which must be positive, to the number of items the
+		 * subscriber is ready to receive.
+		 */
+		void request(long n);
+
+		void cancel();
+	}
+
+	/**
+	 * A stage that is both a subscriber and a publisher.
+	 */
+	public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.parboiled.Parboiled;
+import org.parboiled.matchers.Matcher;
+import org.parboiled.parserunners.ProfilingParseRunner;
+
+/**
+ * Finds the rules of the {@link AsciiDocParser} grammar that most of the
+ * parsing time is spent in. The documents given to {@link #profile} are
+ * parsed without a parse budget by a parser using a
+ * {@link ProfilingParseRunnerProvider}, and {@link #getRuleProfiles()} ranks
+ * the named rules by the time spent in them, including their sub-rules, over
+ * all documents. The hotspots are the rules that take a large share of the
+ * time with few invocations of their own, or that are re-invoked at the same
+ * index often.
+ * 
+ * The main method profiles the asciidoc files given on the command line,
+ * directories being searched for them recursively, and prints the report:
+ * 
+ * <pre>
+ * java org.asciidocj.GrammarProfiler [-top n] [-runs n] file|directory...
+ * </pre>
+ * 
+ * A profiler is not thread-safe.
+ */
+public class GrammarProfiler {
+
+	public static final int DEFAULT_TOP_RULES = 30;
+
+	private final ProfilingParseRunnerProvider provider = new ProfilingParseRunnerProvider();
+	private final AsciiDocParser parser = Parboiled.createParser(
+			AsciiDocParser.class, new ParseBudget(ParseBudget.UNLIMITED,
+					ParseBudget.UNLIMITED, ParseBudget.DEFAULT_CHECK_INTERVAL,
+					false), provider);
+	private int documents;
+
+	/**
+	 * Parses the given asciidoc source with profiling.
+	 * 
+	 * @param asciidocSource
+	 *            the asciidoc source to parse
+	 */
+	public void profile(CharSequence asciidocSource) {
+		parser.parse(new SourceInputBuffer(asciidocSource));
+		documents++;
+	}
+
+	/**
+	 * Parses the given asciidoc file with profiling.
+	 * 
+	 * @param file
+	 *            the asciidoc file to parse
+	 * @param charset
+	 *            the charset of the file
+	 * @throws IOException
+	 *             if reading the file fails
+	 */
+	public void profile(File file, Charset charset) throws IOException {
+		parser.parse(new MappedFileInputBuffer(file, charset));
+		documents++;
+	}
+
+	/**
+	 * @return the number of documents profiled
+	 */
+	public int getDocumentCount() {
+		return documents;
+	}
+
+	/**
+	 * @return the profiles of the named rules invoked so far, the rule the
+	 *         most time was spent in first
+	 */
+	public List<RuleProfile> getRuleProfiles() {
+		// the runners of the rules parses start with share their sub-rules
+		Map<Matcher, RuleProfile> profiles = new IdentityHashMap<Matcher, RuleProfile>();
+		for (ProfilingParseRunner.Report report : provider.getReports()) {
+			for (ProfilingParseRunner.RuleReport rule : report.ruleReports) {
+				Matcher matcher = rule.getMatcher();
+				if (!matcher.hasCustomLabel() || rule.getInvocations() == 0)
+					continue;
+				RuleProfile profile = profiles.get(matcher);
+				if (profile == null) {
+					profile = new RuleProfile(matcher.getLabel());
+					profiles.put(matcher, profile);
+				}
+				profile.add(rule);
+			}
+		}
+		for (Map.Entry<Matcher, Integer> entry : provider.getMemoHits()
+				.entrySet()) {
+			RuleProfile profile = profiles.get(entry.getKey());
+			if (profile != null) {
+				profile.memoized = true;
+				profile.memoHits = entry.getValue();
+			}
+		}
+		List<RuleProfile> ranked = new ArrayList<RuleProfile>(
+				profiles.values());
+		Collections.sort(ranked, new Comparator<RuleProfile>() {
+			public int compare(RuleProfile a, RuleProfile b) {
+				return a.nanos < b.nanos ? 1 : a.nanos > b.nanos ? -1 : 0;
+			}
+		});
+		return ranked;
+	}
+
+	/**
+	 * @param maxRules
+	 *            the number of rules to list
+	 * @return a table of the rules the most time was spent in
+	 */
+	public String printReport(int maxRules) {
+		List<RuleProfile> profiles = getRuleProfiles();
+		long totalNanos = 0;
+		for (ProfilingParseRunner.Report report : provider.getReports()) {
+			totalNanos += report.totalNanoTime;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d documents parsed in %d ms, %d named rules%n",
+				documents, TimeUnit.NANOSECONDS.toMillis(totalNanos),
+				profiles.size()));
+		sb.append(String.format("%-32s %10s %6s %11s %11s %11s %11s %11s %6s%n",
+				"Rule", "Time us", "Time%", "Invocations", "Matches",
+				"Mismatches", "Rematches", "Remismatch", "Memo%"));
+		for (RuleProfile profile : profiles.subList(0,
+				Math.min(maxRules, profiles.size()))) {
+			sb.append(String.format(
+					"%-32s %10d %5.1f%% %11d %11d %11d %11d %11d %6s%n",
+					profile.name, profile.getTime(TimeUnit.MICROSECONDS),
+					totalNanos == 0 ? 0.0 : 100.0 * profile.nanos / totalNanos,
+					profile.invocations, profile.matches, profile.mismatches,
+					profile.rematches, profile.remismatches,
+					profile.memoized ? String.format("%.1f%%",
+							100 * profile.getMemoHitRate()) : "-"));
+		}
+		return sb.toString();
+	}
+
+	public static void main(String[] args) throws IOException {
+		int top = DEFAULT_TOP_RULES;
+		int runs = 1;
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-top") && i + 1 < args.length)
+				top = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-runs") && i + 1 < args.length)
+				runs = Integer.parseInt(args[++i]);
+			else if (new File(args[i]).isDirectory())
+				AsciiDocBatchConverter.collect(new File(args[i]), files);
+			else
+				files.add(new File(args[i]));
+		}
+		if (files.isEmpty()) {
+			System.err.println("Usage: java " + GrammarProfiler.class.getName()
+					+ " [-top n] [-runs n] file|directory...");
+			System.exit(2);
+		}
+		GrammarProfiler profiler = new GrammarProfiler();
+		Charset charset = Charset.forName("UTF-8");
+		for (int run = 0; run < runs; run++) {
+			for (File file : files) {
+				profiler.profile(file, charset);
+			}
+		}
+		System.out.print(profiler.printReport(top));
+	}
+
+	/**
+	 * The invocations of a named rule summed up over all profiled documents.
+	 * A rematch or remismatch is an invocation at an input index the rule
+	 * was already invoked at in the same parse, with the same result.
+	 */
+	public static class RuleProfile {
+
+		private final String name;
+		private int invocations;
+		private int matches;
+		private int mismatches;
+		private int rematches;
+		private int remismatches;
+		private long nanos;
+		private boolean memoized;
+		private int memoHits;
+
+		RuleProfile(String name) {
+			this.name = name;
+		}
+
+		void add(ProfilingParseRunner.RuleReport rule) {
+			invocations += rule.getInvocations();
+			matches += rule.getMatches();
+			mismatches += rule.getMismatches();
+			rematches += rule.getRematches();
+			remismatches += rule.getRemismatches();
+			nanos += rule.getNanoTime();
+		}
+
+		/**
+		 * @return the label of the rule, the name of its rule method for the
+		 *         rules of the parser
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public int getInvocations() {
+			return invocations;
+		}
+
+		public int getMatches() {
+			return matches;
+		}
+
+		public int getMismatches() {
+			return mismatches;
+		}
+
+		public int getRematches() {
+			return rematches;
+		}
+
+		public int getRemismatches() {
+			return remismatches;
+		}
+
+		/**
+		 * @param unit
+		 *            the unit of the returned time
+		 * @return the time spent in the rule including its sub-rules, without
+		 *         the overhead of the profiling
+		 */
+		public long getTime(TimeUnit unit) {
+			return unit.convert(nanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * @return true if the rule memoizes its mismatches
+		 */
+		public boolean isMemoized() {
+			return memoized;
+		}
+
+		/**
+		 * @return the number of invocations answered from the memo of the
+		 *         rule
+		 */
+		public int getMemoHits() {
+			return memoHits;
+		}
+
+		/**
+		 * @return the share of the invocations answered from the memo
+		 */
+		public double getMemoHitRate() {
+			return invocations == 0 ? 0 : (double) memoHits / invocations;
+		}
+
+		@Override
+		public String toString() {
+			return name + " [" + invocations + " invocations, " + matches
+					+ " matches, " + getTime(TimeUnit.MICROSECONDS) + " us]";
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+/**
+ * The precomputed opening and closing markup of an HTML element, so that
+ * printing a tag takes a single append instead of one per character and
+ * name.
+ */
+public final class HtmlTag {
+
+	public static final HtmlTag P = new HtmlTag("p");
+
+	private static final HtmlTag[] HEADINGS = new HtmlTag[7];
+
+	static {
+		for (int level = 1; level < HEADINGS.length; level++)
+			HEADINGS[level] = new HtmlTag("h" + level);
+	}
+
+	private final String name;
+	final char[] open;
+	final char[] close;
+
+	private HtmlTag(String name) {
+		this.name = name;
+		this.open = ('<' + name + '>').toCharArray();
+		this.close = ("</" + name + '>').toCharArray();
+	}
+
+	/**
+	 * Creates the tag of the element with the given name. Every call builds
+	 * the markup anew, so keep the result in a constant instead of calling
+	 * this method for every element printed.
+	 * 
+	 * @param name
+	 *            the element name
+	 * @return a new tag of the element with the given name
+	 */
+	public static HtmlTag of(String name) {
+		return new HtmlTag(name);
+	}
+
+	/**
+	 * @param level
+	 *            the heading level, 1 to 6
+	 * @return the tag of the heading element of the given level
+	 */
+	public static HtmlTag heading(int level) {
+		return 1 <= level && level < HEADINGS.length ? HEADINGS[level]
+				: new HtmlTag("h" + level);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.parboiled.common.Preconditions.checkArgNotNull;
+import static org.parboiled.common.Preconditions.checkArgument;
+
+import java.util.List;
+
+import org.asciidocj.ast.DocumentNode;
+import org.asciidocj.ast.Node;
+import org.asciidocj.ast.TextNode;
+
+/**
+ * Reparses a previously parsed document after a text edit, parsing only the
+ * top-level sections around the edit again.
+ * 
+ * Parsing restarts a few sections before the edit, since an edit at the start
+ * of a section can change where the preceding section ends, and stops at the
+ * first section boundary behind the edit that coincides with the start of an
+ * unchanged section of the previous tree. From there on the previous sections
+ * are reused with their indices shifted by the length difference of the edit.
+ * If the reparsed sections do not line up with a previous section again the
+ * rest of the document is parsed as well.
+ */
+public class IncrementalParser {
+
+	// number of unchanged sections parsed again in front of an edit, enough
+	// to cover the grammar's lookahead across section boundaries
+	private static final int LOOKBEHIND = 2;
+
+	private final AsciiDocParser parser;
+
+	public IncrementalParser(AsciiDocParser parser) {
+		this.parser = parser;
+	}
+
+	/**
+	 * Reparses a document after an edit. The sections of the previous tree
+	 * that are not affected by the edit become part of the returned tree, so
+	 * the previous tree must not be used anymore afterwards.
+	 * 
+	 * @param previous
+	 *            the tree of the source before the edit
+	 * @param source
+	 *            the complete source after the edit
+	 * @param offset
+	 *            the index at which the edit starts
+	 * @param removedLength
+	 *            the number of characters the edit removed at offset
+	 * @param insertedLength
+	 *            the number of characters the edit inserted at offset
+	 * @return the tree of the edited source
+	 */
+	public DocumentNode reparse(DocumentNode previous, CharSequence source,
+			int offset, int removedLength, int insertedLength) {
+		checkArgNotNull(previous, "previous");
+		checkArgNotNull(source, "source");
+		checkArgument(offset >= 0 && removedLength >= 0 && insertedLength >= 0);
+		checkArgument(offset + insertedLength <= source.length());
+
+		List<Node> sections = previous.getChildren();
+		int count = sections.size();
+		int delta = insertedLength - removedLength;
+
+		int first = Math.max(0, indexOf(sections, offset) - LOOKBEHIND);
+		int last = indexOf(sections, offset + removedLength);
+		int windowStart = first < count ? sections.get(first)
+				.getStartIndex() : 0;
+		int limit = last + 1 < count ? sections.get(last + 1)
+				.getStartIndex() + delta - windowStart : Integer.MAX_VALUE;
+
+		DocumentNode partial = parser.parseSections(new SourceInputBuffer(
+				source, windowStart), limit);
+		int end = windowStart + partial.getEndIndex();
+
+		int resync = count;
+		if (end - windowStart >= limit) {
+			// parsing stopped at the limit, continue with the first previous
+			// section starting where the reparsed ones end
+			resync = -1;
+			for (int k = last + 1; k < count; k++) {
+				int start = sections.get(k).getStartIndex() + delta;
+				if (start == end)
+					resync = k;
+				if (start >= end)
+					break;
+			}
+			if (resync < 0) {
+				partial = parser.parseSections(new SourceInputBuffer(source,
+						windowStart), Integer.MAX_VALUE);
+				resync = count;
+			}
+		}
+
+		DocumentNode root = new DocumentNode();
+		List<Node> children = root.getChildren();
+		children.addAll(sections.subList(0, first));
+		for (Node child : partial.getChildren()) {
+			AsciiDocParser.shiftIndices(child, windowStart);
+			children.add(child);
+		}
+		for (Node child : sections.subList(resync, count)) {
+			if (delta != 0) {
+				AsciiDocParser.shiftIndices(child, delta);
+				shiftText(child, source, delta);
+			}
+			children.add(child);
+		}
+		root.setEndIndex(children.isEmpty() ? 0 : children.get(
+				children.size() - 1).getEndIndex());
+		return root;
+	}
+
+	// text nodes refer to the source they were parsed from, which has moved
+	// if the source was edited in place
+	private static void shiftText(Node node, CharSequence source, int delta) {
+		if (node instanceof TextNode)
+			((TextNode) node).shiftParts(source, delta);
+		for (Node subNode : node.getChildren())
+			shiftText(subNode, source, delta);
+	}
+
+	// returns the index of the section containing the given source index or
+	// of the last section if it lies behind all sections
+	private static int indexOf(List<Node> sections, int index) {
+		for (int i = 0; i < sections.size(); i++) {
+			if (index < sections.get(i).getEndIndex())
+				return i;
+		}
+		return sections.size() - 1;
+	}
+}
\ No newline at end of file
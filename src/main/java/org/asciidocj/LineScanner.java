@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.util.Arrays;
+
+import org.parboiled.buffers.InputBuffer;
+import org.parboiled.support.Chars;
+
+/**
+ * Splits an input into lines in a single forward pass and classifies them,
+ * so that the grammar can answer its line-based lookaheads, like whether a
+ * line is underlined as a two-line title, without matching the following
+ * lines character by character again.
+ * 
+ * Lines are scanned lazily as the parser moves forward, so an input decoded
+ * on demand is not read ahead of the parser by more than a line or two.
+ */
+class LineScanner {
+
+	private static final String UNDERLINE_CHARS = "=-~^+";
+
+	private final InputBuffer input;
+
+	// per scanned line: its start, the index of its terminator (or of EOI)
+	// and its underline character or 0
+	private int[] starts = new int[256];
+	private int[] ends = new int[256];
+	private char[] underlines = new char[256];
+	private int count;
+	private boolean complete;
+	private int cursor;
+
+	LineScanner(InputBuffer input) {
+		this.input = input;
+	}
+
+	/**
+	 * Tests whether the line holding the given index has at least one
+	 * character from the index on, is terminated by a newline and is followed
+	 * by a line consisting of at least three of the same character out of
+	 * "=-~^+". This is the lookahead of a two-line title.
+	 */
+	boolean isTitleLine(int index) {
+		int line = lineOf(index);
+		return line >= 0 && index < ends[line] && underline(line + 1) != 0;
+	}
+
+	/**
+	 * Tests whether the line holding the given index is terminated by a
+	 * newline and followed by a line of at least three '=' or '-'.
+	 */
+	boolean isUnderlinedLine(int index) {
+		int line = lineOf(index);
+		if (line < 0)
+			return false;
+		char c = underline(line + 1);
+		return c == '=' || c == '-';
+	}
+
+	// returns the underline character of the given line, 0 if the line is no
+	// underline or does not exist
+	private char underline(int line) {
+		while (line >= count && !complete)
+			scanLine();
+		return line < count ? underlines[line] : 0;
+	}
+
+	// returns the line holding the given index, -1 if it lies behind the
+	// input
+	private int lineOf(int index) {
+		while (!complete && (count == 0 || index >= nextStart(count - 1)))
+			scanLine();
+		if (count == 0 || index < 0 || index >= nextStart(count - 1))
+			return -1;
+		// the parser mostly moves forward, so look near the last line first
+		int line = cursor;
+		while (index < starts[line])
+			line--;
+		while (index >= nextStart(line))
+			line++;
+		cursor = line;
+		return line;
+	}
+
+	private int nextStart(int line) {
+		if (line + 1 < count)
+			return starts[line + 1];
+		// the last scanned line
+		int end = ends[line];
+		if (input.charAt(end) == Chars.EOI)
+			return end + 1;
+		return end + terminatorLength(end);
+	}
+
+	private int terminatorLength(int end) {
+		return input.charAt(end) == '\r' && input.charAt(end + 1) == '\n' ? 2
+				: 1;
+	}
+
+	private void scanLine() {
+		int start = count == 0 ? 0 : nextStart(count - 1);
+		int index = start;
+		char c;
+		while ((c = input.charAt(index)) != '\n' && c != '\r'
+				&& c != Chars.EOI)
+			index++;
+		char underline = 0;
+		if (c != Chars.EOI && index - start >= 3) {
+			underline = input.charAt(start);
+			if (UNDERLINE_CHARS.indexOf(underline) < 0)
+				underline = 0;
+			for (int i = start + 1; underline != 0 && i < index; i++) {
+				if (input.charAt(i) != underline)
+					underline = 0;
+			}
+		}
+		if (count == starts.length) {
+			starts = Arrays.copyOf(starts, count * 2);
+			ends = Arrays.copyOf(ends, count * 2);
+			underlines = Arrays.copyOf(underlines, count * 2);
+		}
+		starts[count] = start;
+		ends[count] = index;
+		underlines[count] = underline;
+		count++;
+		if (c == Chars.EOI)
+			complete = true;
+	}
+}
\ No newline at end of file
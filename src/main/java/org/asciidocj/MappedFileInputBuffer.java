@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.parboiled.common.Preconditions.checkArgNotNull;
+import static org.parboiled.common.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.parboiled.buffers.InputBuffer;
+import org.parboiled.common.IntArrayStack;
+import org.parboiled.support.Chars;
+import org.parboiled.support.IndexRange;
+import org.parboiled.support.Position;
+
+/**
+ * An {@link InputBuffer} over a memory-mapped file that decodes the file
+ * lazily in blocks of characters as the parser advances. Only a small number
+ * of decoded blocks is kept in memory; blocks the parser backtracks into are
+ * decoded again. Like {@link SourceInputBuffer} it appends the two trailing
+ * newlines the grammar relies on virtually.
+ * 
+ * Blocks are decoded independently, which requires a charset without shift
+ * state (e.g. UTF-8, UTF-16 or any single-byte charset). Malformed input is
+ * replaced, as {@link String#String(byte[], Charset)} does.
+ */
+public class MappedFileInputBuffer implements InputBuffer {
+
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	private static final String SUFFIX = "\n\n";
+	private static final int CACHED_BLOCKS = 8;
+
+	private final ByteBuffer bytes;
+	private final CharsetDecoder decoder;
+	private final int blockSize;
+
+	// char and byte offsets of all blocks decoded so far, the entry at
+	// blockCount marks where the next block starts
+	private int[] charStarts = new int[16];
+	private int[] byteStarts = new int[16];
+	private int blockCount;
+	private boolean complete;
+
+	private final Map<Integer, char[]> cache = new LinkedHashMap<Integer, char[]>(
+			CACHED_BLOCKS * 2, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, char[]> eldest) {
+			return size() > CACHED_BLOCKS;
+		}
+	};
+
+	// the block the parser currently reads from
+	private char[] current;
+	private int currentStart;
+	private int currentEnd;
+
+	private int[] newlines;
+
+	/**
+	 * Maps the given file into memory.
+	 * 
+	 * @param file
+	 *            the file to read
+	 * @param charset
+	 *            the charset of the file
+	 * @throws IOException
+	 *             if the file cannot be mapped
+	 */
+	public MappedFileInputBuffer(File file, Charset charset)
+			throws IOException {
+		this(map(file), charset, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a new buffer decoding the given bytes.
+	 * 
+	 * @param bytes
+	 *            the encoded source, read from its position to its limit
+	 * @param charset
+	 *            the charset of the source
+	 * @param blockSize
+	 *            the number of characters to decode at once
+	 */
+	public MappedFileInputBuffer(ByteBuffer bytes, Charset charset,
+			int blockSize) {
+		checkArgNotNull(bytes, "bytes");
+		checkArgNotNull(charset, "charset");
+		checkArgument(blockSize >= 16);
+		this.bytes = bytes.slice();
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.blockSize = blockSize;
+	}
+
+	private static ByteBuffer map(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE - SUFFIX.length())
+				throw new IOException("File too large: " + file);
+			// the mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			in.close();
+		}
+	}
+
+	public char charAt(int index) {
+		if (index >= currentStart && index < currentEnd)
+			return current[index - currentStart];
+		if (index < 0)
+			return Chars.EOI;
+		while (!complete && index >= charStarts[blockCount])
+			decodeNextBlock();
+		int sourceLength = charStarts[blockCount];
+		if (index >= sourceLength) {
+			return index < sourceLength + SUFFIX.length() ? SUFFIX
+					.charAt(index - sourceLength) : Chars.EOI;
+		}
+		int block = Arrays.binarySearch(charStarts, 0, blockCount + 1, index);
+		if (block < 0)
+			block = -(block + 1) - 1;
+		current = getBlock(block);
+		currentStart = charStarts[block];
+		currentEnd = charStarts[block + 1];
+		return current[index - currentStart];
+	}
+
+	private char[] getBlock(int block) {
+		char[] chars = cache.get(block);
+		if (chars == null) {
+			chars = new char[blockSize];
+			decode(bytesFrom(block), chars);
+			cache.put(block, chars);
+		}
+		return chars;
+	}
+
+	private void decodeNextBlock() {
+		int block = blockCount;
+		char[] chars = new char[blockSize];
+		ByteBuffer src = bytesFrom(block);
+		int count = decode(src, chars);
+		if (block + 2 > charStarts.length) {
+			charStarts = Arrays.copyOf(charStarts, charStarts.length * 2);
+			byteStarts = Arrays.copyOf(byteStarts, byteStarts.length * 2);
+		}
+		charStarts[block + 1] = charStarts[block] + count;
+		byteStarts[block + 1] = src.position();
+		blockCount++;
+		complete = !src.hasRemaining();
+		cache.put(block, chars);
+	}
+
+	private ByteBuffer bytesFrom(int block) {
+		ByteBuffer src = bytes.duplicate();
+		src.position(byteStarts[block]);
+		return src;
+	}
+
+	// fills chars from src and returns the number of chars decoded
+	private int decode(ByteBuffer src, char[] chars) {
+		CharBuffer dst = CharBuffer.wrap(chars);
+		decoder.reset();
+		decoder.decode(src, dst, true);
+		if (!src.hasRemaining())
+			decoder.flush(dst);
+		return dst.position();
+	}
+
+	public boolean test(int index, char[] characters) {
+		if (index < 0)
+			return false;
+		for (int i = 0; i < characters.length; i++) {
+			if (charAt(index + i) != characters[i])
+				return false;
+		}
+		return true;
+	}
+
+	public String extract(int start, int end) {
+		if (start < 0)
+			start = 0;
+		int length = getLength();
+		if (end > length)
+			end = length;
+		if (end <= start)
+			return "";
+		StringBuilder sb = new StringBuilder(end - start);
+		for (int i = start; i < end; i++)
+			sb.append(charAt(i));
+		return sb.toString();
+	}
+
+	public String extract(IndexRange range) {
+		return extract(range.start, range.end);
+	}
+
+	public Position getPosition(int index) {
+		buildNewlines();
+		int line = getLine0(newlines, index);
+		int column = index - (line > 0 ? newlines[line - 1] : -1);
+		return new Position(line + 1, column);
+	}
+
+	public int getOriginalIndex(int index) {
+		return index;
+	}
+
+	public String extractLine(int lineNumber) {
+		buildNewlines();
+		checkArgument(0 < lineNumber && lineNumber <= newlines.length + 1);
+		int start = lineNumber > 1 ? newlines[lineNumber - 2] + 1 : 0;
+		int end = lineNumber <= newlines.length ? newlines[lineNumber - 1]
+				: getLength();
+		if (charAt(end - 1) == '\r')
+			end--;
+		return extract(start, end);
+	}
+
+	public int getLineCount() {
+		buildNewlines();
+		return newlines.length + 1;
+	}
+
+	/**
+	 * @return the number of characters including the virtual trailing
+	 *         newlines, decoding the whole source if necessary
+	 */
+	public int getLength() {
+		while (!complete)
+			decodeNextBlock();
+		return charStarts[blockCount] + SUFFIX.length();
+	}
+
+	/**
+	 * @return the number of characters of the source, decoding the whole
+	 *         source if necessary
+	 */
+	int getSourceLength() {
+		return getLength() - SUFFIX.length();
+	}
+
+	private static int getLine0(int[] newlines, int index) {
+		int j = Arrays.binarySearch(newlines, index);
+		return j >= 0 ? j : -(j + 1);
+	}
+
+	private void buildNewlines() {
+		if (newlines == null) {
+			IntArrayStack stack = new IntArrayStack();
+			int length = getLength();
+			for (int i = 0; i < length; i++) {
+				if (charAt(i) == '\n')
+					stack.push(i);
+			}
+			newlines = new int[stack.size()];
+			stack.getElements(newlines, 0);
+		}
+	}
+}
\ No newline at end of file
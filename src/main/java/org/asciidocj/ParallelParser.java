@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.parboiled.common.Preconditions.checkArgNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.asciidocj.ast.DocumentNode;
+import org.asciidocj.ast.Node;
+
+/**
+ * Parses a document by splitting it at top-level section titles and parsing
+ * the chunks concurrently, each with its own parser borrowed from an
+ * {@link AsciiDocParserPool}.
+ * 
+ * The chunk boundaries are found by a quick scan for lines that look like a
+ * one-line title or are followed by a title underline. Each chunk is parsed
+ * in place with the rest of the source visible behind it, starting no section
+ * beyond the chunk end. The chunks are then stitched together in order: a
+ * chunk is used as is if the previous one ended exactly at its start,
+ * otherwise (a line that looked like a title was not one) the gap up to the
+ * next chunk is parsed again sequentially. The resulting tree is therefore
+ * identical to the one of a sequential parse.
+ * 
+ * The calling thread parses the first chunk itself, and any chunk that it
+ * needs next and no worker has started yet, so a parse never waits for a
+ * queued task. It may therefore be called from a task of the same bounded
+ * executor, for instance a batch conversion sharing the executor, without
+ * starving it.
+ */
+public class ParallelParser {
+
+	// chunks smaller than this are not worth a task of their own
+	private static final int MIN_CHUNK_LENGTH = 16 * 1024;
+
+	// number of chunks per pooled parser, to even out differently sized
+	// sections
+	private static final int CHUNKS_PER_PARSER = 4;
+
+	private final AsciiDocParserPool pool;
+	private final ExecutorService executor;
+
+	/**
+	 * @param pool
+	 *            the pool to borrow the parsers from
+	 * @param executor
+	 *            the executor running the chunk parses
+	 */
+	public ParallelParser(AsciiDocParserPool pool, ExecutorService executor) {
+		checkArgNotNull(pool, "pool");
+		checkArgNotNull(executor, "executor");
+		this.pool = pool;
+		this.executor = executor;
+	}
+
+	/**
+	 * Parses the given source. If a chunk cannot be parsed within the parsing
+	 * timeout of the pool the method throws a ParsingTimeoutException.
+	 * 
+	 * @param source
+	 *            the asciidoc source, which must not change during parsing
+	 * @return the AST root
+	 */
+	public DocumentNode parse(CharSequence source) {
+		checkArgNotNull(source, "source");
+		int[] starts = chunkStarts(source, Math.max(MIN_CHUNK_LENGTH,
+				source.length() / (pool.getMaxSize() * CHUNKS_PER_PARSER)));
+		List<FutureTask<DocumentNode>> chunks = new ArrayList<FutureTask<DocumentNode>>(
+				starts.length);
+		try {
+			for (int i = 0; i < starts.length; i++) {
+				FutureTask<DocumentNode> chunk = new FutureTask<DocumentNode>(
+						parseTask(source, starts[i], limit(starts, i)));
+				chunks.add(chunk);
+				// the first chunk is parsed by the calling thread
+				if (i > 0)
+					execute(chunk);
+			}
+			return stitch(source, starts, chunks);
+		} finally {
+			for (Future<DocumentNode> chunk : chunks)
+				chunk.cancel(false);
+		}
+	}
+
+	private void execute(FutureTask<DocumentNode> chunk) {
+		try {
+			executor.execute(chunk);
+		} catch (RejectedExecutionException e) {
+			// the calling thread parses the chunk when it gets to it
+		}
+	}
+
+	private DocumentNode stitch(CharSequence source, int[] starts,
+			List<FutureTask<DocumentNode>> chunks) {
+		DocumentNode root = new DocumentNode();
+		List<Node> children = root.getChildren();
+		int pos = 0;
+		int i = 0;
+		while (true) {
+			while (i < starts.length && starts[i] < pos)
+				i++;
+			DocumentNode partial;
+			int limit;
+			if (i < starts.length && starts[i] == pos) {
+				partial = get(chunks.get(i));
+				limit = limit(starts, i);
+			} else {
+				// the previous chunk ended off a chunk boundary, parse up to
+				// the next one
+				limit = i < starts.length ? starts[i] - pos : Integer.MAX_VALUE;
+				partial = parseChunk(source, pos, limit);
+			}
+			for (Node child : partial.getChildren()) {
+				AsciiDocParser.shiftIndices(child, pos);
+				children.add(child);
+			}
+			int end = partial.getEndIndex();
+			if (end < limit || limit == Integer.MAX_VALUE)
+				break; // no further section follows
+			pos += end;
+		}
+		root.setEndIndex(children.isEmpty() ? 0 : children.get(
+				children.size() - 1).getEndIndex());
+		return root;
+	}
+
+	private Callable<DocumentNode> parseTask(final CharSequence source,
+			final int start, final int limit) {
+		return new Callable<DocumentNode>() {
+			public DocumentNode call() {
+				return parseChunk(source, start, limit);
+			}
+		};
+	}
+
+	private DocumentNode parseChunk(CharSequence source, int start, int limit) {
+		AsciiDocParser parser = pool.borrow();
+		try {
+			return parser.parseSections(new SourceInputBuffer(source, start),
+					limit);
+		} finally {
+			pool.release(parser);
+		}
+	}
+
+	private static DocumentNode get(FutureTask<DocumentNode> chunk) {
+		// runs the chunk unless a worker has started it already, in which
+		// case waiting for it cannot block on a queued task
+		chunk.run();
+		try {
+			return chunk.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while waiting for a chunk", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	// the limit of chunk i relative to its start
+	private static int limit(int[] starts, int i) {
+		return i + 1 < starts.length ? starts[i + 1] - starts[i]
+				: Integer.MAX_VALUE;
+	}
+
+	// returns 0 and the starts of title lines at least minLength apart
+	static int[] chunkStarts(CharSequence source, int minLength) {
+		List<Integer> starts = new ArrayList<Integer>();
+		starts.add(0);
+		int last = 0;
+		int length = source.length();
+		int line = 0;
+		while (line < length) {
+			int next = nextLine(source, line);
+			if (line - last >= minLength
+					&& (source.charAt(line) == '=' || next > line + 1
+							&& isUnderline(source, next))) {
+				starts.add(line);
+				last = line;
+			}
+			line = next;
+		}
+		int[] result = new int[starts.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = starts.get(i);
+		return result;
+	}
+
+	private static int nextLine(CharSequence source, int index) {
+		int length = source.length();
+		while (index < length) {
+			char c = source.charAt(index++);
+			if (c == '\n')
+				break;
+			if (c == '\r') {
+				if (index < length && source.charAt(index) == '\n')
+					index++;
+				break;
+			}
+		}
+		return index;
+	}
+
+	// a line of at least three '=' or '-' as under a two-line title
+	private static boolean isUnderline(CharSequence source, int index) {
+		int length = source.length();
+		if (index >= length)
+			return false;
+		char c = source.charAt(index);
+		if (c != '=' && c != '-')
+			return false;
+		int end = index;
+		while (end < length && source.charAt(end) == c)
+			end++;
+		return end - index >= 3
+				&& (end == length || source.charAt(end) == '\n' || source
+						.charAt(end) == '\r');
+	}
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the effort an {@link AsciiDocParser} spends on a single parse.
+ * 
+ * The parser counts the inline elements it tries to match and only checks
+ * the budget every {@link #checkInterval} of them, so the check costs a
+ * counter decrement in the common case. A check fails the parse with a
+ * {@link ParsingTimeoutException} once the step or time limit is exceeded,
+ * and, for an interruptible budget, with a {@link ParsingCancelledException}
+ * once the parsing thread has been interrupted. The first inline element is
+ * always checked, so an expired budget fails even short parses.
+ */
+public class ParseBudget {
+
+	public static final long UNLIMITED = Long.MAX_VALUE;
+	public static final int DEFAULT_CHECK_INTERVAL = 1024;
+
+	/**
+	 * The maximum parsing time in nanoseconds, or {@link #UNLIMITED}.
+	 */
+	public final long maxParsingTimeInNanos;
+
+	/**
+	 * The maximum number of inline elements tried, or {@link #UNLIMITED}.
+	 * Exceeding it is detected at the next check.
+	 */
+	public final long maxSteps;
+
+	/**
+	 * The number of inline elements tried between two checks.
+	 */
+	public final int checkInterval;
+
+	/**
+	 * Whether an interrupt of the parsing thread cancels the parse.
+	 */
+	public final boolean interruptible;
+
+	/**
+	 * Creates a budget only limiting the parsing time.
+	 * 
+	 * @param maxParsingTimeInMillis
+	 *            the maximum parsing time
+	 */
+	public ParseBudget(long maxParsingTimeInMillis) {
+		this(maxParsingTimeInMillis, UNLIMITED, DEFAULT_CHECK_INTERVAL, false);
+	}
+
+	/**
+	 * Creates a budget.
+	 * 
+	 * @param maxParsingTimeInMillis
+	 *            the maximum parsing time, or {@link #UNLIMITED}
+	 * @param maxSteps
+	 *            the maximum number of inline elements tried, or
+	 *            {@link #UNLIMITED}
+	 * @param checkInterval
+	 *            the number of inline elements tried between two checks
+	 * @param interruptible
+	 *            whether an interrupt of the parsing thread cancels the parse
+	 */
+	public ParseBudget(long maxParsingTimeInMillis, long maxSteps,
+			int checkInterval, boolean interruptible) {
+		if (checkInterval < 1)
+			throw new IllegalArgumentException(
+					"checkInterval must be positive");
+		this.maxParsingTimeInNanos = maxParsingTimeInMillis == UNLIMITED ? UNLIMITED
+				: TimeUnit.MILLISECONDS.toNanos(maxParsingTimeInMillis);
+		this.maxSteps = maxSteps;
+		this.checkInterval = checkInterval;
+		this.interruptible = interruptible;
+	}
+
+	/**
+	 * @return the maximum parsing time in milliseconds, or {@link #UNLIMITED}
+	 */
+	public long getMaxParsingTimeInMillis() {
+		return maxParsingTimeInNanos == UNLIMITED ? UNLIMITED
+				: TimeUnit.NANOSECONDS.toMillis(maxParsingTimeInNanos);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+/**
+ * Thrown when a parse with an interruptible {@link ParseBudget} notices that
+ * its thread has been interrupted, or when the asynchronous conversion the
+ * parse belongs to has been cancelled. The interrupt status is left set.
+ */
+public class ParsingCancelledException extends ParsingTimeoutException {
+
+	private static final long serialVersionUID = -6154385932816212744L;
+
+	public ParsingCancelledException() {
+		super();
+	}
+
+	public ParsingCancelledException(String reason, long elapsedNanos,
+			int index) {
+		super(reason, elapsedNanos, index);
+	}
+}
\ No newline at end of file
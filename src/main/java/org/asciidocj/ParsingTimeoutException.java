@@ -18,11 +18,55 @@
 
 package org.asciidocj;
 
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown when a parse exceeds its {@link ParseBudget}. Exceptions thrown by
+ * the parser tell how long the parse had been running and where in the input
+ * it was aborted.
+ */
 public class ParsingTimeoutException extends RuntimeException {
 
 	private static final long serialVersionUID = 485704593629695102L;
 
+	private final long elapsedNanos;
+	private final int index;
+
 	public ParsingTimeoutException() {
 		super();
+		this.elapsedNanos = -1;
+		this.index = -1;
+	}
+
+	/**
+	 * @param reason
+	 *            what ended the parse
+	 * @param elapsedNanos
+	 *            the time the parse had been running
+	 * @param index
+	 *            the index in the parsed input at which the parse was aborted
+	 */
+	public ParsingTimeoutException(String reason, long elapsedNanos, int index) {
+		super(reason + " after " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+				+ " ms at input index " + index);
+		this.elapsedNanos = elapsedNanos;
+		this.index = index;
+	}
+
+	/**
+	 * @return the time the parse had been running in milliseconds, -1 if
+	 *         unknown
+	 */
+	public long getElapsedMillis() {
+		return elapsedNanos < 0 ? -1 : TimeUnit.NANOSECONDS
+				.toMillis(elapsedNanos);
+	}
+
+	/**
+	 * @return the index in the parsed input at which the parse was aborted,
+	 *         -1 if unknown
+	 */
+	public int getIndex() {
+		return index;
 	}
-}
\ No newline at end of file
+}
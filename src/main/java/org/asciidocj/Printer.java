@@ -18,20 +18,67 @@
 
 package org.asciidocj;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+import org.asciidocj.ast.TextNode;
+
 /**
  * Encapsulates basic string output functionality.
+ * 
+ * A Printer either collects all output in its StringBuilder or, when created
+ * with an {@link Appendable} sink, passes the buffered output on to the sink
+ * whenever the buffer exceeds the configured chunk size.
  */
 public class Printer {
 
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	// the indentation, appended in one go
+	private static final char[] SPACES = "                                ".toCharArray();
+
 	public final StringBuilder sb;
 	public int indent;
 
+	private final Appendable out;
+	private final int chunkSize;
+	private char[] chunk;
+	private long flushed;
+	private boolean continued;
+
 	public Printer() {
 		this(new StringBuilder());
 	}
 
 	public Printer(StringBuilder sb) {
 		this.sb = sb;
+		this.out = null;
+		this.chunkSize = Integer.MAX_VALUE;
+	}
+
+	public Printer(Appendable out) {
+		this(out, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a printer collecting output that continues the output of the
+	 * given printer, starting at its indentation and printing line breaks as
+	 * it would.
+	 * 
+	 * @param continued
+	 *            the printer whose output is continued
+	 */
+	public Printer(Printer continued) {
+		this();
+		this.indent = continued.indent;
+		this.continued = !continued.isEmpty();
+	}
+
+	public Printer(Appendable out, int chunkSize) {
+		this.sb = new StringBuilder(chunkSize + 64);
+		this.out = out;
+		this.chunkSize = chunkSize;
 	}
 
 	public Printer indent(int delta) {
@@ -41,33 +88,149 @@ public class Printer {
 
 	public Printer print(String string) {
 		sb.append(string);
-		return this;
+		return checkFlush();
 	}
 
 	public Printer printEncoded(String string) {
 		FastEncoder.encode(string, sb);
-		return this;
+		return checkFlush();
+	}
+
+	/**
+	 * Prints the text of the given node straight from the sequences it
+	 * refers to.
+	 */
+	public Printer print(TextNode node) {
+		for (int i = 0; i < node.getPartCount(); i++) {
+			CharSequence sequence = node.getPartSequence(i);
+			int start = node.getPartStart(i);
+			int end = node.getPartEnd(i);
+			if (sequence instanceof CharBuffer
+					&& ((CharBuffer) sequence).hasArray()) {
+				// the source char[], StringBuilder would read it by charAt
+				CharBuffer buffer = (CharBuffer) sequence;
+				sb.append(buffer.array(), arrayIndex(buffer, start), end
+						- start);
+			} else
+				sb.append(sequence, start, end);
+		}
+		return checkFlush();
+	}
+
+	public Printer printEncoded(TextNode node) {
+		for (int i = 0; i < node.getPartCount(); i++) {
+			CharSequence sequence = node.getPartSequence(i);
+			int start = node.getPartStart(i);
+			int end = node.getPartEnd(i);
+			if (sequence instanceof CharBuffer
+					&& ((CharBuffer) sequence).hasArray()) {
+				CharBuffer buffer = (CharBuffer) sequence;
+				int offset = arrayIndex(buffer, 0);
+				FastEncoder.encode(buffer.array(), offset + start, offset
+						+ end, sb);
+			} else
+				FastEncoder.encode(sequence, start, end, sb);
+		}
+		return checkFlush();
+	}
+
+	// the array index of a character of a buffer, which like charAt counts
+	// from its position
+	private static int arrayIndex(CharBuffer buffer, int index) {
+		return buffer.arrayOffset() + buffer.position() + index;
+	}
+
+	public Printer print(char[] chars) {
+		sb.append(chars);
+		return checkFlush();
 	}
 
 	public Printer print(char c) {
 		sb.append(c);
-		return this;
+		return checkFlush();
 	}
 
 	public Printer println() {
-		if (sb.length() > 0)
-			print('\n');
-		for (int i = 0; i < indent; i++)
-			print(' ');
-		return this;
+		if (!isEmpty())
+			sb.append('\n');
+		for (int n = indent; n > 0; n -= SPACES.length)
+			sb.append(SPACES, 0, Math.min(n, SPACES.length));
+		return checkFlush();
 	}
 
+	/**
+	 * @return true if nothing has been printed yet
+	 */
+	public boolean isEmpty() {
+		return sb.length() == 0 && flushed == 0 && !continued;
+	}
+
+	/**
+	 * @return the number of characters printed, passed on to the sink or
+	 *         buffered
+	 */
+	public long length() {
+		return flushed + sb.length();
+	}
+
+	/**
+	 * @return the buffered output, which is all output unless this printer
+	 *         writes to a sink
+	 */
 	public String getString() {
 		return sb.toString();
 	}
 
+	/**
+	 * Passes the buffered output on to the sink, if any.
+	 * 
+	 * @throws OutputException
+	 *             if the sink fails
+	 */
+	public Printer flush() {
+		if (out == null || sb.length() == 0)
+			return this;
+		int length = sb.length();
+		try {
+			if (out instanceof Writer) {
+				// Writer.append(CharSequence) would copy into a String first
+				if (chunk == null || chunk.length < length)
+					chunk = new char[length];
+				sb.getChars(0, length, chunk, 0);
+				((Writer) out).write(chunk, 0, length);
+			} else
+				out.append(sb);
+		} catch (IOException e) {
+			throw new OutputException(e);
+		}
+		flushed += length;
+		sb.setLength(0);
+		return this;
+	}
+
 	public Printer clear() {
 		sb.setLength(0);
 		return this;
 	}
+
+	/**
+	 * Prepares this printer for another output, keeping the buffer and
+	 * growing it to the given capacity if it is smaller.
+	 * 
+	 * @param capacityHint
+	 *            the expected length of the buffered output
+	 */
+	public Printer reset(int capacityHint) {
+		sb.setLength(0);
+		if (out == null) // a sink's buffer holds a chunk at most
+			sb.ensureCapacity(capacityHint);
+		indent = 0;
+		flushed = 0;
+		continued = false;
+		return this;
+	}
+
+	private Printer checkFlush() {
+		return sb.length() >= chunkSize ? flush() : this;
+	}
 }
\ No newline at end of file
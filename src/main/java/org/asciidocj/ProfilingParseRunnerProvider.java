@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.asciidocj.ast.Node;
+import org.parboiled.MatcherContext;
+import org.parboiled.Rule;
+import org.parboiled.matchers.Matcher;
+import org.parboiled.matchers.MemoMismatchesMatcher;
+import org.parboiled.parserunners.ParseRunner;
+import org.parboiled.parserunners.ProfilingParseRunner;
+
+/**
+ * A {@link ParseRunnerProvider} for profiling the grammar. It keeps one
+ * {@link ProfilingParseRunner} per rule and reuses it for every parse, so
+ * that the reports of the runners sum up all parses. The runners do not
+ * report parse errors.
+ * 
+ * The reports do not tell the mismatches of a {@code @MemoMismatches} rule
+ * answered from its memo apart from the others, so the runners also count
+ * these memo hits. The memo of such a rule holds the index of its last
+ * mismatch, which the runners track alongside, so they must see every
+ * invocation of the rule: a parser must not have parsed before it uses this
+ * provider.
+ * 
+ * Since the runners are reused, an instance must only serve a single parser.
+ * 
+ * @see GrammarProfiler
+ */
+public class ProfilingParseRunnerProvider implements ParseRunnerProvider {
+
+	private final Map<Rule, ProfilingParseRunner<Node>> runners = new IdentityHashMap<Rule, ProfilingParseRunner<Node>>();
+	// the memo state of the memoizing rules, shared by all runners
+	private final Map<Matcher, Memo> memos = new IdentityHashMap<Matcher, Memo>();
+
+	public ParseRunner<Node> get(Rule rule) {
+		ProfilingParseRunner<Node> runner = runners.get(rule);
+		if (runner == null) {
+			runner = new MemoProfilingParseRunner(rule, memos);
+			runners.put(rule, runner);
+		}
+		return runner;
+	}
+
+	/**
+	 * @return the report of each runner, one per rule a parse was started
+	 *         with
+	 */
+	public List<ProfilingParseRunner.Report> getReports() {
+		List<ProfilingParseRunner.Report> reports = new ArrayList<ProfilingParseRunner.Report>();
+		for (ProfilingParseRunner<Node> runner : runners.values()) {
+			reports.add(runner.getReport());
+		}
+		return reports;
+	}
+
+	/**
+	 * @return the number of memo hits of every {@code @MemoMismatches} rule
+	 *         invoked so far, keyed by the matcher of the rule as reported by
+	 *         the runners
+	 */
+	public Map<Matcher, Integer> getMemoHits() {
+		Map<Matcher, Integer> hits = new IdentityHashMap<Matcher, Integer>();
+		for (Map.Entry<Matcher, Memo> entry : memos.entrySet()) {
+			hits.put(entry.getKey(), entry.getValue().hits);
+		}
+		return hits;
+	}
+
+	private static class Memo {
+
+		int lastMismatch = Integer.MIN_VALUE;
+		int hits;
+	}
+
+	private static class MemoProfilingParseRunner extends
+			ProfilingParseRunner<Node> {
+
+		private final Map<Matcher, Memo> memos;
+
+		MemoProfilingParseRunner(Rule rule, Map<Matcher, Memo> memos) {
+			super(rule);
+			this.memos = memos;
+		}
+
+		@Override
+		public boolean match(MatcherContext<?> context) {
+			Matcher matcher = context.getMatcher();
+			if (!(matcher instanceof MemoMismatchesMatcher))
+				return super.match(context);
+			Matcher inner = MemoMismatchesMatcher.unwrap(matcher);
+			Memo memo = memos.get(inner);
+			if (memo == null) {
+				memo = new Memo();
+				memos.put(inner, memo);
+			}
+			int index = context.getCurrentIndex();
+			if (memo.lastMismatch == index)
+				memo.hits++;
+			boolean matched = super.match(context);
+			memo.lastMismatch = matched ? Integer.MIN_VALUE : index;
+			return matched;
+		}
+	}
+}
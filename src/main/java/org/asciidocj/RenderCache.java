@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache of rendered HTML keyed by a digest of the asciidoc
+ * source and the configuration it was rendered with.
+ * 
+ * Entries are kept in memory in least-recently-used order, bounded by the
+ * total number of HTML characters held. If a directory is given, every entry
+ * is also written there as a file named after its key, and memory misses are
+ * looked up in that directory before the source is rendered again, so the
+ * cache survives restarts.
+ * 
+ * @see CachingAsciiDocProcessor
+ */
+public class RenderCache {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	// hex digits of a SHA-1 digest
+	private static final int KEY_LENGTH = 40;
+	private static final String HTML_SUFFIX = ".html";
+	private static final String TEMP_PREFIX = "entry";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	// creating a digest looks up the security providers, so every thread
+	// keeps one along with its buffer
+	private static final ThreadLocal<Hasher> HASHERS = new ThreadLocal<Hasher>() {
+		@Override
+		protected Hasher initialValue() {
+			return new Hasher();
+		}
+	};
+
+	private final long maxWeight;
+	private final File directory;
+	private final LinkedHashMap<String, String> entries = new LinkedHashMap<String, String>(
+			16, 0.75f, true);
+	private long weight;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates a memory-only cache.
+	 * 
+	 * @param maxWeight
+	 *            the maximum number of HTML characters held in memory
+	 */
+	public RenderCache(long maxWeight) {
+		this(maxWeight, null);
+	}
+
+	/**
+	 * Creates a cache that also stores its entries in the given directory.
+	 * 
+	 * @param maxWeight
+	 *            the maximum number of HTML characters held in memory
+	 * @param directory
+	 *            the directory of the on-disk tier, created if missing, or
+	 *            null for a memory-only cache
+	 */
+	public RenderCache(long maxWeight, File directory) {
+		if (maxWeight < 0)
+			throw new IllegalArgumentException("maxWeight must not be negative");
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs())
+			throw new IllegalArgumentException("Cannot create directory "
+					+ directory);
+		this.maxWeight = maxWeight;
+		this.directory = directory;
+	}
+
+	/**
+	 * Computes the cache key of a source rendered with the given
+	 * configuration.
+	 * 
+	 * @param configuration
+	 *            a description of everything besides the source that affects
+	 *            the HTML
+	 * @param source
+	 *            the asciidoc source
+	 * @return the key, a hex string
+	 */
+	public static String key(String configuration, CharSequence source) {
+		return key(configuration, source, 0, source.length());
+	}
+
+	/**
+	 * Computes the cache key of a part of a source rendered with the given
+	 * configuration.
+	 * 
+	 * @param configuration
+	 *            a description of everything besides the source that affects
+	 *            the HTML
+	 * @param source
+	 *            the asciidoc source
+	 * @param start
+	 *            the index of the first character to hash
+	 * @param end
+	 *            the index after the last character to hash
+	 * @return the key, a hex string
+	 */
+	public static String key(String configuration, CharSequence source,
+			int start, int end) {
+		Hasher hasher = HASHERS.get();
+		MessageDigest digest = hasher.digest;
+		digest.reset(); // in case a previous call failed half-way
+		digest.update(configuration.getBytes(UTF8));
+		digest.update((byte) 0);
+		byte[] buffer = hasher.buffer;
+		int n = 0;
+		for (int i = start; i < end; i++) {
+			char c = source.charAt(i);
+			buffer[n++] = (byte) (c >> 8);
+			buffer[n++] = (byte) c;
+			if (n == buffer.length) {
+				digest.update(buffer, 0, n);
+				n = 0;
+			}
+		}
+		digest.update(buffer, 0, n);
+		byte[] hash = digest.digest();
+		char[] hex = new char[hash.length * 2];
+		for (int i = 0; i < hash.length; i++) {
+			hex[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+			hex[2 * i + 1] = HEX[hash[i] & 0xf];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * Looks up the HTML cached under the given key, in memory first and then
+	 * on disk.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the HTML or null if none is cached
+	 */
+	public String get(String key) {
+		String html;
+		synchronized (this) {
+			html = entries.get(key);
+		}
+		if (html != null) {
+			hits.incrementAndGet();
+			return html;
+		}
+		html = read(key);
+		if (html != null) {
+			diskHits.incrementAndGet();
+			putInMemory(key, html);
+			return html;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Caches the given HTML under the given key.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param html
+	 *            the HTML
+	 */
+	public void put(String key, String html) {
+		putInMemory(key, html);
+		write(key, html);
+	}
+
+	/**
+	 * Removes the entry with the given key from memory and disk.
+	 * 
+	 * @param key
+	 *            the key
+	 */
+	public void invalidate(String key) {
+		synchronized (this) {
+			String html = entries.remove(key);
+			if (html != null)
+				weight -= html.length();
+		}
+		if (directory != null)
+			new File(directory, key + HTML_SUFFIX).delete();
+	}
+
+	/**
+	 * Removes all entries from memory and disk. Only files written by the
+	 * cache are deleted, other files in its directory are kept.
+	 */
+	public void invalidateAll() {
+		synchronized (this) {
+			entries.clear();
+			weight = 0;
+		}
+		if (directory != null) {
+			File[] files = directory.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					if (isCacheFile(file.getName()))
+						file.delete();
+				}
+			}
+		}
+	}
+
+	// whether the directory entry of the given name is an entry written by
+	// this class or a temporary file left by a failed write, the directory
+	// may be shared with other files
+	static boolean isCacheFile(String name) {
+		if (name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX))
+			return true;
+		if (name.length() != KEY_LENGTH + HTML_SUFFIX.length()
+				|| !name.endsWith(HTML_SUFFIX))
+			return false;
+		for (int i = 0; i < KEY_LENGTH; i++) {
+			char c = name.charAt(i);
+			if ((c < '0' || c > '9') && (c < 'a' || c > 'f'))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of lookups answered from memory
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups answered from disk
+	 */
+	public long getDiskHitCount() {
+		return diskHits.get();
+	}
+
+	/**
+	 * @return the number of lookups that found nothing
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of entries dropped from memory to stay within the
+	 *         maximum weight
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the number of entries held in memory
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of HTML characters held in memory
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	private synchronized void putInMemory(String key, String html) {
+		if (html.length() > maxWeight)
+			return;
+		String old = entries.put(key, html);
+		if (old != null)
+			weight -= old.length();
+		weight += html.length();
+		Iterator<Map.Entry<String, String>> it = entries.entrySet().iterator();
+		while (weight > maxWeight) {
+			weight -= it.next().getValue().length();
+			it.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	private String read(String key) {
+		if (directory == null)
+			return null;
+		File file = new File(directory, key + HTML_SUFFIX);
+		if (!file.isFile())
+			return null;
+		try {
+			Reader reader = new InputStreamReader(new FileInputStream(file),
+					UTF8);
+			try {
+				StringBuilder sb = new StringBuilder((int) file.length());
+				char[] buffer = new char[8192];
+				int n;
+				while ((n = reader.read(buffer)) != -1)
+					sb.append(buffer, 0, n);
+				return sb.toString();
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			return null; // treated as a miss, the entry is rendered again
+		}
+	}
+
+	private void write(String key, String html) {
+		if (directory == null)
+			return;
+		File file = new File(directory, key + HTML_SUFFIX);
+		try {
+			// write to a temporary file first so readers never see a partial
+			// entry
+			File temp = File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX,
+					directory);
+			boolean renamed = false;
+			try {
+				Writer writer = new OutputStreamWriter(new FileOutputStream(
+						temp), UTF8);
+				try {
+					writer.write(html);
+				} finally {
+					writer.close();
+				}
+				renamed = temp.renameTo(file);
+				if (!renamed) {
+					file.delete();
+					renamed = temp.renameTo(file);
+				}
+			} finally {
+				if (!renamed)
+					temp.delete();
+			}
+		} catch (IOException e) {
+			// the on-disk tier is best effort, the entry stays in memory
+		}
+	}
+
+	private static class Hasher {
+
+		final MessageDigest digest;
+		final byte[] buffer = new byte[8192];
+
+		Hasher() {
+			try {
+				digest = MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e); // required on every JVM
+			}
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.parboiled.common.Preconditions.checkArgNotNull;
+import static org.parboiled.common.Preconditions.checkArgument;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import org.parboiled.buffers.InputBuffer;
+import org.parboiled.common.IntArrayStack;
+import org.parboiled.support.Chars;
+import org.parboiled.support.IndexRange;
+import org.parboiled.support.Position;
+
+/**
+ * An {@link InputBuffer} reading straight from the asciidoc source. The two
+ * trailing newlines the grammar relies on are appended virtually, so neither
+ * the source nor a padded copy of it has to be allocated.
+ */
+public class SourceInputBuffer implements InputBuffer {
+
+	private static final String SUFFIX = "\n\n";
+
+	private final char[] chars;
+	private final CharSequence sequence;
+	private final int offset;
+	private final int sourceLength;
+	private final int length;
+	private int[] newlines;
+	private CharSequence source;
+
+	public SourceInputBuffer(char[] source) {
+		checkArgNotNull(source, "source");
+		this.chars = source;
+		this.sequence = null;
+		this.offset = 0;
+		this.sourceLength = source.length;
+		this.length = sourceLength + SUFFIX.length();
+	}
+
+	public SourceInputBuffer(CharSequence source) {
+		this(source, 0);
+	}
+
+	/**
+	 * Creates a buffer over the tail of the given source, index 0 of the
+	 * buffer being the character at offset in the source.
+	 * 
+	 * @param source
+	 *            the asciidoc source
+	 * @param offset
+	 *            the index of the first source character to read
+	 */
+	public SourceInputBuffer(CharSequence source, int offset) {
+		checkArgNotNull(source, "source");
+		checkArgument(0 <= offset && offset <= source.length());
+		this.chars = null;
+		this.sequence = source;
+		this.offset = offset;
+		this.sourceLength = source.length() - offset;
+		this.length = sourceLength + SUFFIX.length();
+	}
+
+	public char charAt(int index) {
+		if (0 <= index && index < sourceLength)
+			return chars != null ? chars[index] : sequence.charAt(offset
+					+ index);
+		if (sourceLength <= index && index < length)
+			return SUFFIX.charAt(index - sourceLength);
+		return Chars.EOI;
+	}
+
+	public boolean test(int index, char[] characters) {
+		int count = characters.length;
+		if (index < 0 || index > length - count)
+			return false;
+		for (int i = 0; i < count; i++) {
+			if (charAt(index + i) != characters[i])
+				return false;
+		}
+		return true;
+	}
+
+	public String extract(int start, int end) {
+		if (start < 0)
+			start = 0;
+		if (end > length)
+			end = length;
+		if (end <= start)
+			return "";
+		if (end <= sourceLength) {
+			return chars != null ? new String(chars, start, end - start)
+					: sequence.subSequence(offset + start, offset + end)
+							.toString();
+		}
+		StringBuilder sb = new StringBuilder(end - start);
+		if (start < sourceLength) {
+			if (chars != null)
+				sb.append(chars, start, sourceLength - start);
+			else
+				sb.append(sequence, offset + start, offset + sourceLength);
+		}
+		sb.append(SUFFIX, Math.max(start, sourceLength) - sourceLength, end
+				- sourceLength);
+		return sb.toString();
+	}
+
+	public String extract(IndexRange range) {
+		return extract(range.start, range.end);
+	}
+
+	// the source as a sequence, for nodes referring to it instead of copying
+	CharSequence getSource() {
+		if (source == null)
+			source = chars != null ? CharBuffer.wrap(chars) : sequence;
+		return source;
+	}
+
+	// the index in the source of the given buffer index, which must lie
+	// before the virtual suffix
+	int getSourceIndex(int index) {
+		return offset + index;
+	}
+
+	// true if the given range lies within the source, not touching the
+	// virtual suffix
+	boolean isInSource(int start, int end) {
+		return 0 <= start && end <= sourceLength;
+	}
+
+	public Position getPosition(int index) {
+		buildNewlines();
+		int line = getLine0(newlines, index);
+		int column = index - (line > 0 ? newlines[line - 1] : -1);
+		return new Position(line + 1, column);
+	}
+
+	public int getOriginalIndex(int index) {
+		return index;
+	}
+
+	public String extractLine(int lineNumber) {
+		buildNewlines();
+		checkArgument(0 < lineNumber && lineNumber <= newlines.length + 1);
+		int start = lineNumber > 1 ? newlines[lineNumber - 2] + 1 : 0;
+		int end = lineNumber <= newlines.length ? newlines[lineNumber - 1]
+				: length;
+		if (charAt(end - 1) == '\r')
+			end--;
+		return extract(start, end);
+	}
+
+	public int getLineCount() {
+		buildNewlines();
+		return newlines.length + 1;
+	}
+
+	private static int getLine0(int[] newlines, int index) {
+		int j = Arrays.binarySearch(newlines, index);
+		return j >= 0 ? j : -(j + 1);
+	}
+
+	private void buildNewlines() {
+		if (newlines == null) {
+			IntArrayStack stack = new IntArrayStack();
+			for (int i = 0; i < length; i++) {
+				if (charAt(i) == '\n')
+					stack.push(i);
+			}
+			newlines = new int[stack.size()];
+			stack.getElements(newlines, 0);
+		}
+	}
+}
\ No newline at end of file
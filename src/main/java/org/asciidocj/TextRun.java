@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import java.util.List;
+
+import org.asciidocj.ast.AbstractNode;
+import org.asciidocj.ast.Node;
+import org.asciidocj.ast.TextNode;
+import org.asciidocj.ast.Visitor;
+import org.parboiled.buffers.InputBuffer;
+import org.parboiled.common.ImmutableList;
+
+/**
+ * A run of text matched by a {@link TextRunMatcher}, referring to the input
+ * by its indices. The parser reuses a single instance for all runs, so a run
+ * is only valid until the next one is matched: it is either appended to the
+ * preceding {@link TextNode} or turned into a TextNode of its own before
+ * entering the tree.
+ * 
+ * Runs read from a {@link SourceInputBuffer} are appended by reference to the
+ * source. Other buffers may be decoded lazily and are not to be kept alive by
+ * the tree, so their text is copied.
+ */
+class TextRun extends AbstractNode {
+
+	private InputBuffer input;
+	private boolean space;
+
+	TextRun set(InputBuffer input, int start, int end, boolean space) {
+		this.input = input;
+		this.space = space;
+		setStartIndex(start);
+		setEndIndex(end);
+		return this;
+	}
+
+	// drops the input so that a parser kept in a pool does not hold on to it
+	void clear() {
+		input = null;
+	}
+
+	void appendTo(TextNode node) {
+		int start = getStartIndex();
+		int end = getEndIndex();
+		SourceInputBuffer source = source();
+		if (source != null)
+			node.append(source.getSource(), source.getSourceIndex(start),
+					source.getSourceIndex(end));
+		else if (space)
+			node.append(' ');
+		else {
+			for (int i = start; i < end; i++)
+				node.append(input.charAt(i));
+		}
+		node.setEndIndex(end);
+	}
+
+	TextNode toTextNode() {
+		int start = getStartIndex();
+		int end = getEndIndex();
+		SourceInputBuffer source = source();
+		TextNode node;
+		if (source != null)
+			node = new TextNode(source.getSource(),
+					source.getSourceIndex(start), source.getSourceIndex(end));
+		else
+			node = new TextNode(space ? " " : input.extract(start, end));
+		node.setStartIndex(start);
+		node.setEndIndex(getEndIndex());
+		return node;
+	}
+
+	// the buffer to refer to if the run is its verbatim text, a space run
+	// only if it is a single blank
+	private SourceInputBuffer source() {
+		if (!(input instanceof SourceInputBuffer))
+			return null;
+		SourceInputBuffer source = (SourceInputBuffer) input;
+		int start = getStartIndex();
+		int end = getEndIndex();
+		if (!source.isInSource(start, end))
+			return null;
+		if (space && (end - start != 1 || input.charAt(start) != ' '))
+			return null;
+		return source;
+	}
+
+	public List<Node> getChildren() {
+		return ImmutableList.of();
+	}
+
+	public void accept(Visitor visitor) {
+		throw new IllegalStateException("Text runs are not part of the tree");
+	}
+}
\ No newline at end of file
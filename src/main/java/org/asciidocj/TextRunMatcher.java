@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import org.parboiled.MatcherContext;
+import org.parboiled.matchers.CustomMatcher;
+import org.parboiled.support.Chars;
+
+/**
+ * Matches a run of one or more plain text characters, or of one or more
+ * spaces and tabs, in a single step instead of one matcher invocation per
+ * character. Plain text characters are all characters except spaces, tabs
+ * and newlines.
+ */
+class TextRunMatcher extends CustomMatcher {
+
+	private final boolean spaces;
+
+	TextRunMatcher(boolean spaces) {
+		super(spaces ? "SpaceRun" : "NormalCharRun");
+		this.spaces = spaces;
+	}
+
+	public <V> boolean match(MatcherContext<V> context) {
+		int start = context.getCurrentIndex();
+		int index = start;
+		while (isStarterChar(context.getInputBuffer().charAt(index)))
+			index++;
+		if (index == start)
+			return false;
+		context.advanceIndex(index - start);
+		context.createNode();
+		return true;
+	}
+
+	@Override
+	public boolean isSingleCharMatcher() {
+		return false;
+	}
+
+	@Override
+	public boolean canMatchEmpty() {
+		return false;
+	}
+
+	@Override
+	public boolean isStarterChar(char c) {
+		if (c == ' ' || c == '\t')
+			return spaces;
+		return !spaces && c != '\n' && c != '\r' && c != Chars.EOI;
+	}
+
+	@Override
+	public char getStarterChar() {
+		return spaces ? ' ' : 'a';
+	}
+}
\ No newline at end of file
@@ -20,9 +20,12 @@ package org.asciidocj;
 
 import static org.parboiled.common.Preconditions.checkArgNotNull;
 
+import java.io.IOException;
+
 import org.asciidocj.ast.DocumentNode;
 import org.asciidocj.ast.Node;
 import org.asciidocj.ast.ParaNode;
+import org.asciidocj.ast.SectionNode;
 import org.asciidocj.ast.SimpleNode;
 import org.asciidocj.ast.SuperNode;
 import org.asciidocj.ast.TextNode;
@@ -31,31 +34,150 @@ import org.asciidocj.ast.Visitor;
 
 public class ToHtmlSerializer implements Visitor {
 
+	// number of lines behind a section the grammar looks at while parsing it
+	private static final int SECTION_LOOKAHEAD_LINES = 2;
+
 	protected Printer printer = new Printer();
+	protected CharSequence source;
+	protected RenderCache fragmentCache;
+
+	// reused by printChildrenToString, null while in use
+	private Printer scratch = new Printer();
 
 	public ToHtmlSerializer() {
 	}
 
+	public ToHtmlSerializer(Printer printer) {
+		this.printer = printer;
+	}
+
+	/**
+	 * Creates a serializer that caches the HTML of every top-level section,
+	 * keyed by the source text the section was parsed from, and reuses it for
+	 * sections with unchanged text instead of serializing them again. The
+	 * trees serialized must have been parsed from the given source.
+	 * 
+	 * @param source
+	 *            the asciidoc source of the trees to serialize
+	 * @param fragmentCache
+	 *            the cache of section fragments
+	 */
+	public ToHtmlSerializer(CharSequence source, RenderCache fragmentCache) {
+		checkArgNotNull(source, "source");
+		checkArgNotNull(fragmentCache, "fragmentCache");
+		this.source = source;
+		this.fragmentCache = fragmentCache;
+	}
+
+	/**
+	 * Prepares this serializer for another document, keeping the buffer of
+	 * its printer.
+	 * 
+	 * @param sizeHint
+	 *            the expected length of the HTML
+	 */
+	public ToHtmlSerializer reset(int sizeHint) {
+		printer.reset(sizeHint);
+		return this;
+	}
+
+	/**
+	 * @return the capacity of the buffer retained between documents
+	 */
+	public int getBufferCapacity() {
+		return printer.sb.capacity();
+	}
+
 	public String toHtml(DocumentNode astRoot) {
 		checkArgNotNull(astRoot, "astRoot");
 		astRoot.accept(this);
 		return printer.getString();
 	}
 
+	/**
+	 * Serializes the given AST to the given sink, passing the output on in
+	 * chunks rather than collecting all of it in memory first.
+	 * 
+	 * @param astRoot
+	 *            the AST root
+	 * @param out
+	 *            the sink to write the HTML to
+	 * @return the number of characters written
+	 * @throws IOException
+	 *             if writing to the sink fails
+	 */
+	public long toHtml(DocumentNode astRoot, Appendable out)
+			throws IOException {
+		checkArgNotNull(astRoot, "astRoot");
+		checkArgNotNull(out, "out");
+		Printer priorPrinter = printer;
+		printer = new Printer(out);
+		try {
+			astRoot.accept(this);
+			return printer.flush().length();
+		} catch (OutputException e) {
+			throw e.getCause();
+		} finally {
+			printer = priorPrinter;
+		}
+	}
+
+	/**
+	 * Serializes the document read by the given reader straight from its
+	 * events, without building the tree of the document. The fragment cache,
+	 * if any, is not used.
+	 * 
+	 * @param events
+	 *            a reader positioned before its first event
+	 * @return the HTML
+	 */
+	public String toHtml(AsciiDocEventReader events) {
+		checkArgNotNull(events, "events");
+		while (events.hasNext()) {
+			switch (events.next()) {
+			case START_TITLE:
+				printer.print(HtmlTag.heading(events.getLevel()).open);
+				break;
+			case END_TITLE:
+				printer.print(HtmlTag.heading(events.getLevel()).close);
+				break;
+			case START_PARA:
+				printer.print(HtmlTag.P.open);
+				break;
+			case END_PARA:
+				printer.print(HtmlTag.P.close);
+				break;
+			case TEXT:
+				printer.print(events.getTextNode());
+				break;
+			case SIMPLE:
+				printSimple(events.getSimpleType());
+				break;
+			default:
+				// documents, sections and other groups have no markup
+			}
+		}
+		return printer.getString();
+	}
+
 	public void visit(DocumentNode node) {
 		visitChildren(node);
 	}
 
 	public void visit(TitleNode node) {
-		printTag(node, "h" + node.getLevel());
+		printTag(node, HtmlTag.heading(node.getLevel()));
 	}
 
 	public void visit(ParaNode node) {
-		printTag(node, "p");
+		printTag(node, HtmlTag.P);
 	}
 
 	public void visit(SimpleNode node) {
-		switch (node.getType()) {
+		printSimple(node.getType());
+	}
+
+	protected void printSimple(SimpleNode.Type type) {
+		switch (type) {
 		case Apostrophe:
 			printer.print("&rsquo;");
 			break;
@@ -83,11 +205,14 @@ public class ToHtmlSerializer implements Visitor {
 	}
 
 	public void visit(TextNode node) {
-		printer.print(node.getText());
+		printer.print(node);
 	}
 
 	public void visit(SuperNode node) {
-		visitChildren(node);
+		if (fragmentCache != null && node instanceof SectionNode)
+			printFragment(node);
+		else
+			visitChildren(node);
 	}
 
 	public void visit(Node node) {
@@ -104,9 +229,12 @@ public class ToHtmlSerializer implements Visitor {
 	}
 
 	protected void printTag(TextNode node, String tag) {
-		printer.print('<').print(tag).print('>');
-		printer.printEncoded(node.getText());
-		printer.print('<').print('/').print(tag).print('>');
+		printer.print('<').print(tag).print('>').printEncoded(node)
+				.print('<').print('/').print(tag).print('>');
+	}
+
+	protected void printTag(TextNode node, HtmlTag tag) {
+		printer.print(tag.open).printEncoded(node).print(tag.close);
 	}
 
 	protected void printTag(SuperNode node, String tag) {
@@ -115,6 +243,12 @@ public class ToHtmlSerializer implements Visitor {
 		printer.print('<').print('/').print(tag).print('>');
 	}
 
+	protected void printTag(SuperNode node, HtmlTag tag) {
+		printer.print(tag.open);
+		visitChildren(node);
+		printer.print(tag.close);
+	}
+
 	protected void printIndentedTag(SuperNode node, String tag) {
 		printer.println().print('<').print(tag).print('>').indent(+2);
 		visitChildren(node);
@@ -122,6 +256,12 @@ public class ToHtmlSerializer implements Visitor {
 				.print('>');
 	}
 
+	protected void printIndentedTag(SuperNode node, HtmlTag tag) {
+		printer.println().print(tag.open).indent(+2);
+		visitChildren(node);
+		printer.indent(-2).println().print(tag.close);
+	}
+
 	protected void printImageTag(SuperNode imageNode, String url) {
 		printer.print("<img src=\"").print(url).print("\"  alt=\"")
 				.printEncoded(printChildrenToString(imageNode)).print("\"/>");
@@ -132,11 +272,44 @@ public class ToHtmlSerializer implements Visitor {
 				.print('"');
 	}
 
+	protected void printFragment(SuperNode node) {
+		String key = fragmentKey(node);
+		String html = fragmentCache.get(key);
+		if (html == null) {
+			Printer priorPrinter = printer;
+			printer = new Printer(priorPrinter);
+			visitChildren(node);
+			html = printer.getString();
+			printer = priorPrinter;
+			fragmentCache.put(key, html);
+		}
+		printer.print(html);
+	}
+
+	// the key covers the source of the section and the lines behind it that
+	// the grammar looked at, as well as the printer state the HTML depends on
+	protected String fragmentKey(Node node) {
+		// sections may end in the newlines appended behind the source
+		int end = Math.min(node.getEndIndex(), source.length());
+		int lines = 0;
+		while (end < source.length() && lines < SECTION_LOOKAHEAD_LINES) {
+			if (source.charAt(end++) == '\n')
+				lines++;
+		}
+		String configuration = getClass().getName() + '/' + printer.indent
+				+ (printer.isEmpty() ? "/start" : "")
+				+ (end == source.length() ? "/end" : "");
+		return RenderCache.key(configuration, source, node.getStartIndex(),
+				end);
+	}
+
 	protected String printChildrenToString(SuperNode node) {
 		Printer priorPrinter = printer;
-		printer = new Printer();
+		printer = scratch != null ? scratch.reset(0) : new Printer();
+		scratch = null;
 		visitChildren(node);
 		String result = printer.getString();
+		scratch = printer;
 		printer = priorPrinter;
 		return result;
 	}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+/**
+ * Keeps one idle {@link ToHtmlSerializer} per thread, so that repeated
+ * conversions on a thread reuse the serializer and the buffer of its printer
+ * instead of growing a new one each time.
+ * 
+ * A serializer borrowed while the thread's one is in use is created anew.
+ * Serializers whose buffer has grown beyond the configured limit are not kept,
+ * so that a single huge document does not pin its buffer for good.
+ */
+public class ToHtmlSerializerPool {
+
+	public static final int DEFAULT_MAX_RETAINED_CAPACITY = 4 * 1024 * 1024;
+
+	private final int maxRetainedCapacity;
+	private final ThreadLocal<ToHtmlSerializer> idle = new ThreadLocal<ToHtmlSerializer>();
+
+	public ToHtmlSerializerPool() {
+		this(DEFAULT_MAX_RETAINED_CAPACITY);
+	}
+
+	/**
+	 * @param maxRetainedCapacity
+	 *            the largest buffer capacity, in chars, of a serializer kept
+	 *            for reuse
+	 */
+	public ToHtmlSerializerPool(int maxRetainedCapacity) {
+		this.maxRetainedCapacity = maxRetainedCapacity;
+	}
+
+	/**
+	 * Returns the idle serializer of the current thread, or a new one if
+	 * there is none, prepared for a document of the given source length.
+	 * 
+	 * @param sourceLength
+	 *            the length of the asciidoc source, from which the size of
+	 *            the HTML is estimated
+	 * @return the serializer
+	 */
+	public ToHtmlSerializer borrow(int sourceLength) {
+		ToHtmlSerializer serializer = idle.get();
+		if (serializer != null)
+			idle.remove();
+		else
+			serializer = new ToHtmlSerializer();
+		// the HTML is about as long as the source
+		return serializer.reset(sourceLength + sourceLength / 8 + 64);
+	}
+
+	/**
+	 * Returns a serializer to the pool. It must not be used afterwards.
+	 * 
+	 * @param serializer
+	 *            a serializer previously borrowed from this pool
+	 */
+	public void release(ToHtmlSerializer serializer) {
+		if (serializer.getBufferCapacity() <= maxRetainedCapacity)
+			idle.set(serializer);
+	}
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj.ast;
+
+import static org.parboiled.common.Preconditions.checkArgNotNull;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact, read-only copy of a parsed tree, meant for holding many parsed
+ * documents in memory at once.
+ * 
+ * The nodes are numbered in document order, the root being node 0, and their
+ * type, indices and links to parent, first child and next sibling are held in
+ * primitive arrays instead of node objects and child lists. The text of all
+ * text nodes is copied into a single char array, so the compact document
+ * does not refer to the source.
+ * 
+ * The tree is navigated by node number with the getters of this class, or
+ * visited with an existing {@link Visitor} through {@link #accept(Visitor)},
+ * which creates the node objects of one top-level node at a time.
+ */
+public class CompactDocument {
+
+	public static final int NONE = -1;
+
+	public static final int DOCUMENT = 0;
+	public static final int HEADER = 1;
+	public static final int SECTION = 2;
+	public static final int PARA = 3;
+	public static final int TITLE = 4;
+	public static final int SIMPLE = 5;
+	public static final int TEXT = 6;
+	public static final int SUPER = 7;
+
+	private static final SimpleNode.Type[] SIMPLE_TYPES = SimpleNode.Type
+			.values();
+
+	private int count;
+	private byte[] types;
+	private int[] starts;
+	private int[] ends;
+	private int[] parents;
+	private int[] firstChildren;
+	private int[] nextSiblings;
+	// the title level, the simple node type or the text offset
+	private int[] data;
+	// the end of the text in chars, for text nodes
+	private int[] textEnds;
+	private char[] chars;
+
+	private CompactDocument(int capacity) {
+		types = new byte[capacity];
+		starts = new int[capacity];
+		ends = new int[capacity];
+		parents = new int[capacity];
+		firstChildren = new int[capacity];
+		nextSiblings = new int[capacity];
+		data = new int[capacity];
+		textEnds = new int[capacity];
+	}
+
+	/**
+	 * Copies the given tree. It may only consist of the node types of this
+	 * package.
+	 * 
+	 * @param root
+	 *            the tree to copy
+	 * @return the compact copy
+	 * @throws IllegalArgumentException
+	 *             if the tree contains custom nodes
+	 */
+	public static CompactDocument of(DocumentNode root) {
+		checkArgNotNull(root, "root");
+		CompactDocument document = new CompactDocument(64);
+		StringBuilder text = new StringBuilder();
+		document.add(root, NONE, text);
+		document.trim();
+		document.chars = new char[text.length()];
+		text.getChars(0, text.length(), document.chars, 0);
+		return document;
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return one of the type constants of this class
+	 */
+	public int getType(int node) {
+		return types[node];
+	}
+
+	public int getStartIndex(int node) {
+		return starts[node];
+	}
+
+	public int getEndIndex(int node) {
+		return ends[node];
+	}
+
+	/**
+	 * @return the parent of the given node, NONE for the root
+	 */
+	public int getParent(int node) {
+		return parents[node];
+	}
+
+	/**
+	 * @return the first child of the given node, NONE if it has none
+	 */
+	public int getFirstChild(int node) {
+		return firstChildren[node];
+	}
+
+	/**
+	 * @return the next sibling of the given node, NONE if it is the last
+	 */
+	public int getNextSibling(int node) {
+		return nextSiblings[node];
+	}
+
+	/**
+	 * @return the level of the given title node
+	 */
+	public int getLevel(int node) {
+		checkType(node, TITLE);
+		return data[node];
+	}
+
+	/**
+	 * @return the type of the given simple node
+	 */
+	public SimpleNode.Type getSimpleType(int node) {
+		checkType(node, SIMPLE);
+		return SIMPLE_TYPES[data[node]];
+	}
+
+	/**
+	 * @return the text of the given text node
+	 */
+	public String getText(int node) {
+		checkType(node, TEXT);
+		return new String(chars, data[node], textEnds[node] - data[node]);
+	}
+
+	/**
+	 * Appends the text of the given text node without creating a String.
+	 */
+	public void appendText(int node, StringBuilder sb) {
+		checkType(node, TEXT);
+		sb.append(chars, data[node], textEnds[node] - data[node]);
+	}
+
+	/**
+	 * Visits the tree with the given visitor. The root passed to the visitor
+	 * creates the node objects of its children one child at a time, whenever
+	 * its child list is read.
+	 */
+	public void accept(Visitor visitor) {
+		toDocumentNode().accept(visitor);
+	}
+
+	/**
+	 * @return a root whose read-only child list creates the nodes of a child
+	 *         each time the child is requested
+	 */
+	public DocumentNode toDocumentNode() {
+		DocumentNode root = new LazyDocumentNode();
+		root.setStartIndex(starts[0]);
+		root.setEndIndex(ends[0]);
+		return root;
+	}
+
+	/**
+	 * Creates the node objects of the given node and its descendants.
+	 */
+	public Node toNode(int node) {
+		AbstractNode result;
+		switch (types[node]) {
+		case DOCUMENT:
+			result = addChildren(new DocumentNode(), node);
+			break;
+		case HEADER:
+			result = addChildren(new HeaderNode(), node);
+			break;
+		case SECTION:
+			result = addChildren(new SectionNode(), node);
+			break;
+		case PARA:
+			result = new ParaNode(children(node));
+			break;
+		case TITLE:
+			result = addChildren(new TitleNode(data[node]), node);
+			break;
+		case SIMPLE:
+			result = new SimpleNode(SIMPLE_TYPES[data[node]]);
+			break;
+		case TEXT:
+			result = new TextNode(getText(node));
+			break;
+		default:
+			result = addChildren(new SuperNode(), node);
+		}
+		result.setStartIndex(starts[node]);
+		result.setEndIndex(ends[node]);
+		return result;
+	}
+
+	private SuperNode addChildren(SuperNode parent, int node) {
+		parent.getChildren().addAll(children(node));
+		return parent;
+	}
+
+	private List<Node> children(int node) {
+		List<Node> children = new ArrayList<Node>();
+		for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child])
+			children.add(toNode(child));
+		return children;
+	}
+
+	private void checkType(int node, int type) {
+		if (types[node] != type)
+			throw new IllegalArgumentException("Node " + node
+					+ " is not of type " + type);
+	}
+
+	// adds the given node and its descendants in document order
+	private int add(Node node, int parent, StringBuilder text) {
+		int index = count++;
+		if (index == types.length)
+			grow();
+		Class<?> type = node.getClass();
+		if (type == TextNode.class) {
+			types[index] = TEXT;
+			data[index] = text.length();
+			((TextNode) node).appendTo(text);
+			textEnds[index] = text.length();
+		} else if (type == SimpleNode.class) {
+			types[index] = SIMPLE;
+			data[index] = ((SimpleNode) node).getType().ordinal();
+		} else if (type == TitleNode.class) {
+			types[index] = TITLE;
+			data[index] = ((TitleNode) node).getLevel();
+		} else if (type == ParaNode.class)
+			types[index] = PARA;
+		else if (type == SectionNode.class)
+			types[index] = SECTION;
+		else if (type == HeaderNode.class)
+			types[index] = HEADER;
+		else if (type == DocumentNode.class)
+			types[index] = DOCUMENT;
+		else if (type == SuperNode.class)
+			types[index] = SUPER;
+		else
+			throw new IllegalArgumentException("Custom node "
+					+ type.getName() + " cannot be stored compactly");
+		starts[index] = node.getStartIndex();
+		ends[index] = node.getEndIndex();
+		parents[index] = parent;
+		firstChildren[index] = NONE;
+		nextSiblings[index] = NONE;
+		int previous = NONE;
+		for (Node child : node.getChildren()) {
+			int added = add(child, index, text);
+			if (previous == NONE)
+				firstChildren[index] = added;
+			else
+				nextSiblings[previous] = added;
+			previous = added;
+		}
+		return index;
+	}
+
+	private void grow() {
+		resize(types.length * 2);
+	}
+
+	private void trim() {
+		resize(count);
+	}
+
+	private void resize(int capacity) {
+		types = Arrays.copyOf(types, capacity);
+		starts = Arrays.copyOf(starts, capacity);
+		ends = Arrays.copyOf(ends, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		firstChildren = Arrays.copyOf(firstChildren, capacity);
+		nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+		data = Arrays.copyOf(data, capacity);
+		textEnds = Arrays.copyOf(textEnds, capacity);
+	}
+
+	// a root creating its children from the arrays on demand
+	private class LazyDocumentNode extends DocumentNode {
+
+		private final int[] children;
+
+		LazyDocumentNode() {
+			int size = 0;
+			for (int child = firstChildren[0]; child != NONE; child = nextSiblings[child])
+				size++;
+			children = new int[size];
+			int i = 0;
+			for (int child = firstChildren[0]; child != NONE; child = nextSiblings[child])
+				children[i++] = child;
+		}
+
+		@Override
+		public List<Node> getChildren() {
+			return new AbstractList<Node>() {
+
+				@Override
+				public Node get(int index) {
+					return toNode(children[index]);
+				}
+
+				@Override
+				public int size() {
+					return children.length;
+				}
+			};
+		}
+	}
+}
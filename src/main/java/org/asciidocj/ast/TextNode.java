@@ -18,25 +18,193 @@
 
 package org.asciidocj.ast;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.parboiled.common.ImmutableList;
 import org.parboiled.common.StringUtils;
 
+/**
+ * A node of plain text. The text is held as a list of parts, each a range of
+ * a character sequence, which usually is the parsed source itself: text is
+ * only copied if it is requested as a String or appended as such. A node
+ * referring to the source is only valid as long as the source is not changed.
+ */
 public class TextNode extends AbstractNode {
 
-	private final StringBuilder sb;
+	private static final String SPACE = " ";
+
+	private CharSequence[] sequences;
+	private int[] starts;
+	private int[] ends;
+	private int count;
+
+	// the last part if it is owned by this node and can be appended to
+	private StringBuilder own;
+	private String text;
 
 	public TextNode(String text) {
-		this.sb = new StringBuilder(text);
+		this(text, 0, text.length());
+	}
+
+	/**
+	 * Creates a node referring to a range of the given sequence.
+	 * 
+	 * @param sequence
+	 *            the sequence, which must not change while the node is used
+	 * @param start
+	 *            the index of the first character of the text
+	 * @param end
+	 *            the index behind the last character of the text
+	 */
+	public TextNode(CharSequence sequence, int start, int end) {
+		sequences = new CharSequence[2];
+		starts = new int[2];
+		ends = new int[2];
+		addPart(sequence, start, end);
 	}
 
 	public String getText() {
-		return sb.toString();
+		if (text == null) {
+			if (count == 1 && sequences[0] instanceof String)
+				text = ((String) sequences[0]).substring(starts[0], ends[0]);
+			else {
+				StringBuilder sb = new StringBuilder(length());
+				appendTo(sb);
+				text = sb.toString();
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * @return the length of the text
+	 */
+	public int length() {
+		int length = 0;
+		for (int i = 0; i < count; i++)
+			length += ends[i] - starts[i];
+		return length;
+	}
+
+	/**
+	 * Appends the text without materializing it as a String first.
+	 * 
+	 * @param sb
+	 *            the builder to append to
+	 */
+	public void appendTo(StringBuilder sb) {
+		for (int i = 0; i < count; i++)
+			sb.append(sequences[i], starts[i], ends[i]);
+	}
+
+	public int getPartCount() {
+		return count;
+	}
+
+	public CharSequence getPartSequence(int part) {
+		return sequences[part];
+	}
+
+	public int getPartStart(int part) {
+		return starts[part];
+	}
+
+	public int getPartEnd(int part) {
+		return ends[part];
+	}
+
+	/**
+	 * Appends a range of the given sequence by reference.
+	 * 
+	 * @param sequence
+	 *            the sequence, which must not change while the node is used
+	 * @param start
+	 *            the index of the first character to append
+	 * @param end
+	 *            the index behind the last character to append
+	 */
+	public void append(CharSequence sequence, int start, int end) {
+		if (start == end)
+			return;
+		int last = count - 1;
+		if (last >= 0 && sequences[last] == sequence && ends[last] == start
+				&& sequence != own) {
+			ends[last] = end;
+			text = null;
+		} else
+			addPart(sequence, start, end);
+	}
+
+	/**
+	 * Appends the text of the given node by reference.
+	 */
+	public void append(TextNode node) {
+		for (int i = 0; i < node.count; i++)
+			append(node.sequences[i], node.starts[i], node.ends[i]);
+	}
+
+	public void append(String string) {
+		builder().append(string);
+		ends[count - 1] = own.length();
+		text = null;
+	}
+
+	public void append(char c) {
+		if (c == ' ' && own == null)
+			append(SPACE, 0, 1);
+		else {
+			builder().append(c);
+			ends[count - 1] = own.length();
+			text = null;
+		}
+	}
+
+	/**
+	 * Shifts the parts referring to the given sequence, after the sequence
+	 * has been edited in place.
+	 * 
+	 * @param sequence
+	 *            the edited sequence
+	 * @param delta
+	 *            the length difference of the edit
+	 */
+	public void shiftParts(CharSequence sequence, int delta) {
+		for (int i = 0; i < count; i++) {
+			if (sequences[i] == sequence) {
+				starts[i] += delta;
+				ends[i] += delta;
+			}
+		}
+	}
+
+	// returns the builder owned as last part, copying the last part into it
+	// if the node does not own one yet
+	private StringBuilder builder() {
+		if (own == null) {
+			int last = count - 1;
+			own = new StringBuilder(ends[last] - starts[last] + 16).append(
+					sequences[last], starts[last], ends[last]);
+			sequences[last] = own;
+			starts[last] = 0;
+			ends[last] = own.length();
+		}
+		return own;
 	}
 
-	public void append(String text) {
-		sb.append(text);
+	private void addPart(CharSequence sequence, int start, int end) {
+		if (count == sequences.length) {
+			int capacity = count * 2;
+			sequences = Arrays.copyOf(sequences, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+		}
+		sequences[count] = sequence;
+		starts[count] = start;
+		ends[count] = end;
+		count++;
+		own = null;
+		text = null;
 	}
 
 	@Override
@@ -51,4 +219,4 @@ public class TextNode extends AbstractNode {
 	public void accept(Visitor visitor) {
 		visitor.visit(this);
 	}
-}
\ No newline at end of file
+}
@@ -24,6 +24,8 @@ public interface Visitor {
 
 	void visit(DocumentNode node);
 
+	void visit(ParaNode node);
+
 	void visit(SimpleNode node);
 
 	void visit(TextNode node);
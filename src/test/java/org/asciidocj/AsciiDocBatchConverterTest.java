@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsciiDocBatchConverterTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void convertsDirectoryTreeInPlace() throws Exception {
+		File root = folder.getRoot();
+		File sub = folder.newFolder("sub");
+		write(new File(root, "a.adoc"), "= A");
+		write(new File(sub, "b.asciidoc"), "== B");
+		write(new File(sub, "notes.txt"), "= Not converted");
+		BatchConversionSummary summary = new AsciiDocBatchConverter(
+				new ConcurrentAsciiDocProcessor(), executor)
+				.convertDirectory(root);
+		assertEquals(2, summary.getResults().size());
+		assertEquals(2, summary.getConvertedCount());
+		assertTrue(summary.getFailures().isEmpty());
+		assertEquals("<h1>A</h1>", read(new File(root, "a.html")));
+		assertEquals("<h2>B</h2>", read(new File(sub, "b.html")));
+		assertFalse(new File(sub, "notes.html").exists());
+	}
+
+	@Test
+	public void reportsTimeouts() throws Exception {
+		write(folder.newFile("slow.adoc"), "= Slow");
+		BatchConversionSummary summary = new AsciiDocBatchConverter(
+				new ConcurrentAsciiDocProcessor(-1), executor)
+				.convertDirectory(folder.getRoot());
+		assertEquals(0, summary.getConvertedCount());
+		BatchConversionSummary.FileResult result = summary.getFailures()
+				.get(0);
+		assertTrue(result.getFailure() instanceof ParsingTimeoutException);
+		ParsingTimeoutException timeout = (ParsingTimeoutException) result
+				.getFailure();
+		assertTrue(timeout.getIndex() >= 0);
+		assertTrue(timeout.getElapsedMillis() >= 0);
+		assertFalse(result.getTarget().exists());
+	}
+
+	@Test(expected = IOException.class)
+	public void missingDirectory() throws Exception {
+		new AsciiDocBatchConverter(new ConcurrentAsciiDocProcessor(), executor)
+				.convertDirectory(new File(folder.getRoot(), "missing"));
+	}
+
+	private static void write(File file, String text) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(text.getBytes(UTF8));
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			byte[] bytes = new byte[(int) in.length()];
+			in.readFully(bytes);
+			return new String(bytes, UTF8);
+		} finally {
+			in.close();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.asciidocj.AsciiDocEventReader.Event;
+import org.asciidocj.ast.Node;
+import org.asciidocj.ast.ParaNode;
+import org.asciidocj.ast.SectionNode;
+import org.asciidocj.ast.SimpleNode;
+import org.asciidocj.ast.TextNode;
+import org.asciidocj.ast.TitleNode;
+import org.junit.Test;
+
+public class AsciiDocEventReaderTest {
+
+	private static final String SOURCE = "= Title\n\nfirst paragraph -- with "
+			+ "a dash...\n\n== One\n\nsecond paragraph +\nwith <two> lines\n\n"
+			+ "Two\n---\n\nthird\n\n'''\n\n== Three\n\nfourth & last";
+
+	private final AsciiDocProcessor processor = new AsciiDocProcessor();
+
+	@Test
+	public void eventsFollowTree() throws Exception {
+		StringBuilder expected = new StringBuilder();
+		String document = " 0-" + SOURCE.length() + '\n';
+		expected.append("START_DOCUMENT").append(document);
+		for (Node section : processor.parseAsciidoc(SOURCE).getChildren())
+			walk(section, expected);
+		expected.append("END_DOCUMENT").append(document);
+
+		StringBuilder actual = new StringBuilder();
+		AsciiDocEventReader events = processor.readAsciidoc(SOURCE);
+		while (events.hasNext()) {
+			Event event = events.next();
+			actual.append(event).append(' ').append(events.getStartIndex())
+					.append('-').append(events.getEndIndex());
+			if (event == Event.TEXT)
+				actual.append(' ').append(events.getText());
+			else if (event == Event.START_TITLE)
+				actual.append(' ').append(events.getLevel());
+			else if (event == Event.SIMPLE)
+				actual.append(' ').append(events.getSimpleType());
+			actual.append('\n');
+		}
+		assertEquals(expected.toString(), actual.toString());
+		assertFalse(events.hasNext());
+	}
+
+	@Test
+	public void rendersLikeTree() throws Exception {
+		assertEquals(processor.asciidocToHtml(SOURCE), new ToHtmlSerializer()
+				.toHtml(processor.readAsciidoc(SOURCE)));
+		assertEquals(processor.asciidocToHtml(SOURCE + "\n"),
+				new ToHtmlSerializer().toHtml(processor.readAsciidoc(SOURCE
+						+ "\n")));
+		assertEquals(processor.asciidocToHtml(""), new ToHtmlSerializer()
+				.toHtml(processor.readAsciidoc("")));
+	}
+
+	private static void walk(Node node, StringBuilder sb) {
+		String range = " " + node.getStartIndex() + '-' + node.getEndIndex();
+		if (node instanceof TextNode) {
+			sb.append("TEXT").append(range).append(' ')
+					.append(((TextNode) node).getText()).append('\n');
+			return;
+		}
+		if (node instanceof SimpleNode) {
+			sb.append("SIMPLE").append(range).append(' ')
+					.append(((SimpleNode) node).getType()).append('\n');
+			return;
+		}
+		String name = name(node);
+		sb.append("START_").append(name).append(range);
+		if (node instanceof TitleNode)
+			sb.append(' ').append(((TitleNode) node).getLevel());
+		sb.append('\n');
+		for (Node child : node.getChildren())
+			walk(child, sb);
+		sb.append("END_").append(name).append(range).append('\n');
+	}
+
+	private static String name(Node node) {
+		if (node instanceof SectionNode)
+			return "SECTION";
+		if (node instanceof TitleNode)
+			return "TITLE";
+		if (node instanceof ParaNode)
+			return "PARA";
+		return "ELEMENT";
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+
+import org.asciidocj.ast.CompactDocument;
+import org.asciidocj.ast.DocumentNode;
+import org.asciidocj.ast.Node;
+import org.asciidocj.ast.TextNode;
+import org.junit.Test;
+
+public class CompactDocumentTest {
+
+	private static final String SOURCE = "= Title\n\nfirst paragraph -- with "
+			+ "a dash...\n\n== One\n\nsecond paragraph +\nwith <two> lines\n\n"
+			+ "Two\n---\n\nthird\n\n'''\n\n== Three\n\nfourth & last\n";
+
+	private final AsciiDocProcessor processor = new AsciiDocProcessor();
+
+	@Test
+	public void inflatesToSameTree() throws Exception {
+		DocumentNode root = processor.parseAsciidoc(SOURCE);
+		CompactDocument compact = CompactDocument.of(root);
+		assertEquals(dump(root), dump(compact.toNode(0)));
+	}
+
+	@Test
+	public void visitsLikeTree() throws Exception {
+		DocumentNode root = processor.parseAsciidoc(SOURCE);
+		ToHtmlSerializer serializer = new ToHtmlSerializer();
+		CompactDocument.of(root).accept(serializer);
+		assertEquals(new ToHtmlSerializer().toHtml(root), serializer.printer
+				.getString());
+	}
+
+	@Test
+	public void navigatesByNodeNumber() throws Exception {
+		DocumentNode root = processor.parseAsciidoc(SOURCE);
+		CompactDocument compact = CompactDocument.of(root);
+		StringBuilder sb = new StringBuilder();
+		for (int node = 0; node < compact.size(); node++) {
+			if (compact.getType(node) == CompactDocument.TEXT)
+				compact.appendText(node, sb);
+		}
+		StringBuilder expected = new StringBuilder();
+		appendText(root, expected);
+		assertEquals(expected.toString(), sb.toString());
+
+		int first = compact.getFirstChild(0);
+		assertEquals(CompactDocument.NONE, compact.getParent(0));
+		assertEquals(0, compact.getParent(first));
+		assertEquals(root.getChildren().size(), count(compact, 0));
+	}
+
+	private static int count(CompactDocument compact, int node) {
+		int count = 0;
+		for (int child = compact.getFirstChild(node); child != CompactDocument.NONE; child = compact
+				.getNextSibling(child))
+			count++;
+		return count;
+	}
+
+	private static void appendText(Node node, StringBuilder sb) {
+		if (node instanceof TextNode)
+			((TextNode) node).appendTo(sb);
+		for (Node child : node.getChildren())
+			appendText(child, sb);
+	}
+
+	private static String dump(Node node) {
+		StringBuilder sb = new StringBuilder();
+		dump(node, 0, sb);
+		return sb.toString();
+	}
+
+	private static void dump(Node node, int level, StringBuilder sb) {
+		for (int i = 0; i < level; i++)
+			sb.append("  ");
+		sb.append(node).append('\n');
+		for (Node child : node.getChildren())
+			dump(child, level + 1, sb);
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ConcurrentAsciiDocProcessorTest {
+
+	@Test
+	public void poolReusesParsers() throws Exception {
+		AsciiDocParserPool pool = new AsciiDocParserPool(1,
+				AsciiDocProcessor.DEFAULT_MAX_PARSING_TIME);
+		ConcurrentAsciiDocProcessor processor = new ConcurrentAsciiDocProcessor(
+				pool);
+		assertEquals("<h1>My Title</h1>", processor.asciidocToHtml("= My Title"));
+		assertEquals("<h2>My Title</h2>",
+				processor.asciidocToHtml("== My Title"));
+		assertEquals(1, pool.getCreatedCount());
+	}
+
+	@Test
+	public void failedCreationFreesSlot() throws Exception {
+		AsciiDocParserPool pool = new AsciiDocParserPool(1,
+				AsciiDocProcessor.DEFAULT_MAX_PARSING_TIME) {
+			private boolean failed;
+
+			@Override
+			protected AsciiDocParser createParser() {
+				if (!failed) {
+					failed = true;
+					throw new IllegalStateException("first creation fails");
+				}
+				return super.createParser();
+			}
+		};
+		try {
+			pool.borrow();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals(0, pool.getCreatedCount());
+		}
+		AsciiDocParser parser = pool.borrow();
+		assertEquals(1, pool.getCreatedCount());
+		pool.release(parser);
+	}
+
+	@Test
+	public void failedCreationWakesWaiter() throws Exception {
+		final CountDownLatch creating = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		final AsciiDocParserPool pool = new AsciiDocParserPool(1,
+				AsciiDocProcessor.DEFAULT_MAX_PARSING_TIME) {
+			private boolean failed;
+
+			@Override
+			protected AsciiDocParser createParser() {
+				if (!failed) {
+					failed = true;
+					creating.countDown();
+					try {
+						proceed.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					throw new IllegalStateException("first creation fails");
+				}
+				return super.createParser();
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<AsciiDocParser> first = executor
+					.submit(new Callable<AsciiDocParser>() {
+						public AsciiDocParser call() {
+							return pool.borrow();
+						}
+					});
+			creating.await();
+			Future<AsciiDocParser> waiter = executor
+					.submit(new Callable<AsciiDocParser>() {
+						public AsciiDocParser call() {
+							return pool.borrow();
+						}
+					});
+			Thread.sleep(50); // let the waiter block
+			proceed.countDown();
+			try {
+				first.get(10, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+			pool.release(waiter.get(10, TimeUnit.SECONDS));
+			assertEquals(1, pool.getCreatedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void convertsInParallel() throws Exception {
+		final ConcurrentAsciiDocProcessor processor = new ConcurrentAsciiDocProcessor(
+				new AsciiDocParserPool(3,
+						AsciiDocProcessor.DEFAULT_MAX_PARSING_TIME));
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 200; i++) {
+				final int level = i % 5 + 1;
+				results.add(executor.submit(new Callable<String>() {
+					public String call() {
+						return processor.asciidocToHtml(equalsSigns(level)
+								+ " My Title");
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				int level = i % 5 + 1;
+				assertEquals("<h" + level + ">My Title</h" + level + '>',
+						results.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(processor.pool.getCreatedCount() <= 3);
+	}
+
+	@Test
+	public void asyncConversionReportsTimeout() throws Exception {
+		ConcurrentAsciiDocProcessor processor = new ConcurrentAsciiDocProcessor(
+				new AsciiDocParserPool(1, new ParseBudget(
+						ParseBudget.UNLIMITED, 4, 1, false)));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertEquals("<h1>Title</h1>",
+					processor.asciidocToHtmlAsync("= Title", executor).get());
+			try {
+				processor.asciidocToHtmlAsync(
+						"= Title\n\nsome words in a paragraph\n", executor)
+						.get();
+				fail();
+			} catch (ExecutionException e) {
+				ParsingTimeoutException timeout = (ParsingTimeoutException) e
+						.getCause();
+				assertTrue(timeout.getIndex() > 0);
+				assertTrue(timeout.getElapsedMillis() >= 0);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void cancelledFutureAbortsParse() throws Exception {
+		AsciiDocParser parser = new AsciiDocParserPool(1,
+				ParseBudget.UNLIMITED).borrow();
+		FutureTask<String> cancelled = new FutureTask<String>(
+				new Callable<String>() {
+					public String call() {
+						return null;
+					}
+				});
+		cancelled.cancel(false);
+		parser.setCancellation(cancelled);
+		try {
+			parser.parse(new SourceInputBuffer("= Title\n\nsome words\n"));
+			fail();
+		} catch (ParsingCancelledException e) {
+			assertTrue(e.getIndex() >= 0);
+		}
+		parser.setCancellation(null);
+		assertEquals(1, parser.parse(new SourceInputBuffer("= Title"))
+				.getChildren().size());
+	}
+
+	@Test
+	public void cancellingReleasesParser() throws Exception {
+		StringBuilder source = new StringBuilder();
+		for (int i = 0; i < 200000; i++)
+			source.append("words of a long paragraph\n");
+		ConcurrentAsciiDocProcessor processor = new ConcurrentAsciiDocProcessor(
+				new AsciiDocParserPool(1, ParseBudget.UNLIMITED));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> html = processor.asciidocToHtmlAsync("= Title\n\n"
+					+ source, executor);
+			Thread.sleep(20);
+			assertTrue(html.cancel(false));
+			try {
+				html.get();
+				fail();
+			} catch (CancellationException e) {
+				// expected
+			}
+			// the single pooled parser becomes available again
+			assertEquals("<h1>Title</h1>", processor.asciidocToHtml("= Title"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static String equalsSigns(int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++)
+			sb.append('=');
+		return sb.toString();
+	}
+}
\ No newline at end of file
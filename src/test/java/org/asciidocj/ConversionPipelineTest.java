@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ConversionPipelineTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void convertsInOrderWithBoundedDemand() throws Exception {
+		List<CharSequence> sources = new ArrayList<CharSequence>();
+		for (int i = 0; i < 50; i++)
+			sources.add("= Title " + i + "\n\nparagraph " + i + "\n");
+		ListPublisher publisher = new ListPublisher(sources);
+		CollectingSubscriber subscriber = new CollectingSubscriber(3);
+		ConversionPipeline pipeline = new ConversionPipeline(
+				new ConcurrentAsciiDocProcessor(), executor, 2, executor, 2, 4);
+		pipeline.subscribe(subscriber);
+		publisher.subscribe(pipeline);
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+
+		assertNull(subscriber.error);
+		assertEquals(sources.size(), subscriber.results.size());
+		for (int i = 0; i < sources.size(); i++) {
+			assertEquals("<h1>Title " + i + "</h1><p>paragraph " + i + "</p>",
+					subscriber.results.get(i).getHtml());
+		}
+		assertTrue(publisher.maxOutstanding <= 4);
+	}
+
+	@Test
+	public void timeoutsArePerItem() throws Exception {
+		// four steps suffice for a title but not for a paragraph
+		ConcurrentAsciiDocProcessor processor = new ConcurrentAsciiDocProcessor(
+				new ParseBudget(ParseBudget.UNLIMITED, 4, 1, false));
+		ListPublisher publisher = new ListPublisher(Arrays.<CharSequence> asList(
+				"= One", "= Two\n\nsome words in a paragraph\n", "= Three"));
+		CollectingSubscriber subscriber = new CollectingSubscriber(
+				Long.MAX_VALUE);
+		ConversionPipeline pipeline = new ConversionPipeline(processor,
+				executor, 1, executor, 1, 2);
+		pipeline.subscribe(subscriber);
+		publisher.subscribe(pipeline);
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+
+		assertNull(subscriber.error);
+		assertEquals(3, subscriber.results.size());
+		assertEquals("<h1>One</h1>", subscriber.results.get(0).getHtml());
+		assertTrue(subscriber.results.get(1).getError() != null);
+		assertNull(subscriber.results.get(1).getHtml());
+		assertEquals("<h1>Three</h1>", subscriber.results.get(2).getHtml());
+	}
+
+	@Test
+	public void rejectedTaskFailsPipeline() throws Exception {
+		ExecutorService stopped = Executors.newSingleThreadExecutor();
+		stopped.shutdown();
+		ListPublisher publisher = new ListPublisher(Arrays.<CharSequence> asList(
+				"= One", "= Two"));
+		CollectingSubscriber subscriber = new CollectingSubscriber(
+				Long.MAX_VALUE);
+		ConversionPipeline pipeline = new ConversionPipeline(
+				new ConcurrentAsciiDocProcessor(), stopped, 1, executor, 1, 2);
+		pipeline.subscribe(subscriber);
+		publisher.subscribe(pipeline);
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+
+		assertTrue(subscriber.error instanceof RejectedExecutionException);
+		assertTrue(subscriber.results.isEmpty());
+	}
+
+	// publishes the sources as they are requested
+	private static class ListPublisher implements
+			Flow.Publisher<CharSequence> {
+
+		private final List<CharSequence> sources;
+		private int next;
+		private long outstanding;
+		private long maxOutstanding;
+		private boolean emitting;
+
+		ListPublisher(List<CharSequence> sources) {
+			this.sources = sources;
+		}
+
+		public void subscribe(final Flow.Subscriber<? super CharSequence> subscriber) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				public void request(long n) {
+					synchronized (ListPublisher.this) {
+						outstanding += n;
+						maxOutstanding = Math.max(maxOutstanding, outstanding);
+						if (emitting)
+							return;
+						emitting = true;
+					}
+					while (true) {
+						CharSequence source;
+						synchronized (ListPublisher.this) {
+							if (outstanding == 0 || next > sources.size()) {
+								emitting = false;
+								return;
+							}
+							if (next == sources.size()) {
+								next++;
+								emitting = false;
+								source = null;
+							} else {
+								outstanding--;
+								source = sources.get(next++);
+							}
+						}
+						if (source == null) {
+							subscriber.onComplete();
+							return;
+						}
+						subscriber.onNext(source);
+					}
+				}
+
+				public void cancel() {
+				}
+			});
+		}
+	}
+
+	// requests batchSize results at a time
+	private static class CollectingSubscriber implements
+			Flow.Subscriber<ConversionPipeline.Result> {
+
+		final List<ConversionPipeline.Result> results = new ArrayList<ConversionPipeline.Result>();
+		final CountDownLatch done = new CountDownLatch(1);
+		private final long batchSize;
+		private Flow.Subscription subscription;
+		private long remaining;
+		Throwable error;
+
+		CollectingSubscriber(long batchSize) {
+			this.batchSize = batchSize;
+		}
+
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			remaining = batchSize;
+			subscription.request(batchSize);
+		}
+
+		public void onNext(ConversionPipeline.Result item) {
+			results.add(item);
+			if (--remaining == 0) {
+				remaining = batchSize;
+				subscription.request(batchSize);
+			}
+		}
+
+		public void onError(Throwable throwable) {
+			error = throwable;
+			done.countDown();
+		}
+
+		public void onComplete() {
+			done.countDown();
+		}
+	}
+}
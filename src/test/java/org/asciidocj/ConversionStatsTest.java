@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ConversionStatsTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String SOURCE = "= Title\n\nfirst paragraph\n\n"
+			+ "== Section\n\nsecond paragraph\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static class Recorder implements ConversionListener {
+
+		final List<ConversionMetrics> metrics = new ArrayList<ConversionMetrics>();
+
+		public void onConversion(ConversionMetrics metrics) {
+			this.metrics.add(metrics);
+		}
+	}
+
+	@Test
+	public void listenerSeesConversion() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		Recorder recorder = new Recorder();
+		processor.addConversionListener(recorder);
+		String html = processor.asciidocToHtml(SOURCE);
+
+		assertEquals(1, recorder.metrics.size());
+		ConversionMetrics metrics = recorder.metrics.get(0);
+		assertFalse(metrics.isTimedOut());
+		assertEquals(SOURCE.length(), metrics.getInputLength());
+		assertEquals(html.length(), metrics.getOutputLength());
+		assertTrue(metrics.getSteps() > 0);
+		Map<String, Integer> counts = metrics.getNodeCounts();
+		assertEquals(Integer.valueOf(1), counts.get("DocumentNode"));
+		assertEquals(Integer.valueOf(2), counts.get("ParaNode"));
+
+		processor.removeConversionListener(recorder);
+		processor.asciidocToHtml(SOURCE);
+		assertEquals(1, recorder.metrics.size());
+	}
+
+	@Test
+	public void listenerSeesTimeout() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor(new ParseBudget(
+				ParseBudget.UNLIMITED, 4, 1, false));
+		Recorder recorder = new Recorder();
+		processor.addConversionListener(recorder);
+		assertNull(processor.asciidocToHtml(SOURCE));
+
+		ConversionMetrics metrics = recorder.metrics.get(0);
+		assertTrue(metrics.isTimedOut());
+		assertEquals(-1, metrics.getOutputLength());
+		assertEquals(5, metrics.getSteps());
+		assertTrue(metrics.getNodeCounts().isEmpty());
+	}
+
+	@Test
+	public void sinkConversionsReport() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		ConcurrentAsciiDocProcessor concurrent = new ConcurrentAsciiDocProcessor();
+		Recorder recorder = new Recorder();
+		processor.addConversionListener(recorder);
+		concurrent.addConversionListener(recorder);
+		String html = processor.asciidocToHtml(SOURCE);
+		recorder.metrics.clear();
+
+		StringWriter writer = new StringWriter();
+		processor.asciidocToHtml(SOURCE.toCharArray(), writer);
+		processor.asciidocToHtml(SOURCE.toCharArray(),
+				new ByteArrayOutputStream(), UTF8);
+		concurrent.asciidocToHtml(SOURCE.toCharArray(), new StringWriter());
+		concurrent.asciidocToHtml(SOURCE.toCharArray(),
+				new ByteArrayOutputStream(), UTF8);
+
+		assertEquals(html, writer.toString());
+		assertEquals(4, recorder.metrics.size());
+		for (ConversionMetrics metrics : recorder.metrics) {
+			assertEquals(SOURCE.length(), metrics.getInputLength());
+			assertEquals(html.length(), metrics.getOutputLength());
+			assertEquals(Integer.valueOf(2),
+					metrics.getNodeCounts().get("ParaNode"));
+		}
+	}
+
+	@Test
+	public void fileConversionsReport() throws Exception {
+		File in = folder.newFile("in.adoc");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(in), UTF8);
+		writer.write(SOURCE);
+		writer.close();
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		ConcurrentAsciiDocProcessor concurrent = new ConcurrentAsciiDocProcessor();
+		Recorder recorder = new Recorder();
+		processor.addConversionListener(recorder);
+		concurrent.addConversionListener(recorder);
+		String html = processor.asciidocToHtml(SOURCE);
+		recorder.metrics.clear();
+
+		processor.convertFile(in, new File(folder.getRoot(), "a.html"), UTF8);
+		concurrent.convertFile(in, new File(folder.getRoot(), "b.html"), UTF8);
+
+		assertEquals(2, recorder.metrics.size());
+		for (ConversionMetrics metrics : recorder.metrics) {
+			assertEquals(SOURCE.length(), metrics.getInputLength());
+			assertEquals(html.length(), metrics.getOutputLength());
+		}
+	}
+
+	@Test
+	public void fileTimeoutReports() throws Exception {
+		File in = folder.newFile("in.adoc");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(in), UTF8);
+		writer.write(SOURCE);
+		writer.close();
+		ParseBudget budget = new ParseBudget(ParseBudget.UNLIMITED, 4, 1,
+				false);
+		AsciiDocProcessor processor = new AsciiDocProcessor(budget);
+		ConcurrentAsciiDocProcessor concurrent = new ConcurrentAsciiDocProcessor(
+				budget);
+		Recorder recorder = new Recorder();
+		processor.addConversionListener(recorder);
+		concurrent.addConversionListener(recorder);
+
+		assertFalse(processor.convertFile(in, new File(folder.getRoot(),
+				"a.html"), UTF8));
+		assertFalse(concurrent.asciidocToHtml(SOURCE.toCharArray(),
+				new StringWriter()));
+
+		assertEquals(2, recorder.metrics.size());
+		assertTrue(recorder.metrics.get(0).isTimedOut());
+		assertEquals(-1, recorder.metrics.get(0).getInputLength());
+		assertTrue(recorder.metrics.get(1).isTimedOut());
+		assertEquals(SOURCE.length(), recorder.metrics.get(1).getInputLength());
+	}
+
+	@Test
+	public void cancellationsAreNotTimeouts() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor(new ParseBudget(
+				ParseBudget.UNLIMITED, ParseBudget.UNLIMITED, 1, true));
+		ConversionStats stats = new ConversionStats();
+		Recorder recorder = new Recorder();
+		processor.addConversionListener(stats);
+		processor.addConversionListener(recorder);
+		Thread.currentThread().interrupt();
+		try {
+			assertNull(processor.asciidocToHtml(SOURCE));
+		} finally {
+			Thread.interrupted();
+		}
+
+		ConversionMetrics metrics = recorder.metrics.get(0);
+		assertTrue(metrics.isCancelled());
+		assertFalse(metrics.isTimedOut());
+		assertEquals(1, stats.getCancellationCount());
+		assertEquals(0, stats.getTimeoutCount());
+	}
+
+	@Test
+	public void statsSumUpConversions() throws Exception {
+		ConcurrentAsciiDocProcessor processor = new ConcurrentAsciiDocProcessor();
+		ConversionStats stats = new ConversionStats();
+		processor.addConversionListener(stats);
+		String html = processor.asciidocToHtml(SOURCE);
+		processor.asciidocToHtml(SOURCE.toCharArray());
+
+		assertEquals(2, stats.getConversionCount());
+		assertEquals(0, stats.getTimeoutCount());
+		assertEquals(2 * SOURCE.length(), stats.getInputChars());
+		assertEquals(2 * html.length(), stats.getOutputChars());
+		assertEquals(Long.valueOf(4), stats.getNodeCounts().get("ParaNode"));
+
+		stats.reset();
+		assertEquals(0, stats.getConversionCount());
+		assertTrue(stats.getNodeCounts().isEmpty());
+	}
+
+	@Test
+	public void statsAreExposedAsMXBean() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor(new ParseBudget(
+				ParseBudget.UNLIMITED, 4, 1, false));
+		ConversionStats stats = new ConversionStats();
+		processor.addConversionListener(stats);
+		processor.asciidocToHtml(SOURCE);
+		ObjectName name = new ObjectName(
+				"org.asciidocj:type=ConversionStats,name=test");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		stats.register(name);
+		try {
+			assertEquals(1L, server.getAttribute(name, "ConversionCount"));
+			assertEquals(1L, server.getAttribute(name, "TimeoutCount"));
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+}
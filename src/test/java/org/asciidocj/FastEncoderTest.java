@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FastEncoderTest {
+
+	private static final String CHARS = "ab <>&\"'\u00e9\u20ac";
+
+	@Test
+	public void unencodedStringIsReturned() throws Exception {
+		String text = "plain text \u00e9";
+		assertSame(text, FastEncoder.encode(text));
+		assertEquals("", FastEncoder.encode((String) null));
+	}
+
+	@Test
+	public void allSinksEncodeLikeSingleCharacters() throws Exception {
+		Random random = new Random(0x2626);
+		for (int n = 0; n < 500; n++) {
+			// some texts longer than the chunks Strings are encoded in
+			String text = randomText(random, n % 50 == 0 ? 3000 : 40);
+			int start = random.nextInt(text.length() + 1);
+			int end = start + random.nextInt(text.length() - start + 1);
+			String expected = reference(text.substring(start, end));
+			char[] chars = text.toCharArray();
+
+			assertEquals(expected, FastEncoder.encode(text.substring(start,
+					end)));
+			StringBuilder sb = new StringBuilder();
+			FastEncoder.encode(text, start, end, sb);
+			assertEquals(expected, sb.toString());
+			sb.setLength(0);
+			FastEncoder.encode(chars, start, end, sb);
+			assertEquals(expected, sb.toString());
+
+			StringWriter writer = new StringWriter();
+			FastEncoder.encode(text, start, end, writer);
+			FastEncoder.encode(chars, start, end, writer);
+			assertEquals(expected + expected, writer.toString());
+
+			CharBuffer buffer = CharBuffer.allocate(2 * expected.length());
+			FastEncoder.encode(text, start, end, buffer);
+			FastEncoder.encode(chars, start, end, buffer);
+			buffer.flip();
+			assertEquals(expected + expected, buffer.toString());
+		}
+	}
+
+	@Test
+	public void obfuscationIsReproducible() throws Exception {
+		String email = "john.doe+tag@example.com";
+		assertEquals(FastEncoder.obfuscate(email), FastEncoder.obfuscate(email));
+		assertEquals(FastEncoder.obfuscate(email, 42), FastEncoder.obfuscate(
+				email, 42));
+		StringWriter writer = new StringWriter();
+		FastEncoder.obfuscate(email, 42, writer);
+		assertEquals(FastEncoder.obfuscate(email, 42), writer.toString());
+		assertEquals(email, decode(FastEncoder.obfuscate(email, 42)));
+	}
+
+	@Test
+	public void obfuscationDecodesToAddress() throws Exception {
+		String email = "\u00e9l\u00e8ve@\ud83d\ude00.example.org";
+		for (long seed = 0; seed < 100; seed++)
+			assertEquals(email, decode(FastEncoder.obfuscate(email, seed)));
+	}
+
+	// resolves the character references written by obfuscate
+	private static String decode(String html) {
+		StringBuilder sb = new StringBuilder();
+		int i = 0;
+		while (i < html.length()) {
+			if (html.startsWith("&#", i)) {
+				int end = html.indexOf(';', i);
+				boolean hex = html.charAt(i + 2) == 'x';
+				sb.appendCodePoint(Integer.parseInt(html.substring(i
+						+ (hex ? 3 : 2), end), hex ? 16 : 10));
+				i = end + 1;
+			} else
+				sb.append(html.charAt(i++));
+		}
+		return sb.toString();
+	}
+
+	private static String randomText(Random random, int maxLength) {
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(maxLength);
+		for (int i = 0; i < length; i++)
+			sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+		return sb.toString();
+	}
+
+	private static String reference(String text) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			case '"':
+				sb.append("&quot;");
+				break;
+			case '\'':
+				sb.append("&#39;");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.asciidocj.ast.Node;
+import org.junit.Test;
+import org.parboiled.Parboiled;
+import org.parboiled.errors.ParseError;
+import org.parboiled.parserunners.ParseRunner;
+import org.parboiled.support.DefaultValueStack;
+import org.parboiled.support.ParsingResult;
+import org.parboiled.support.ValueStack;
+
+public class FastParseRunnerProviderTest {
+
+	private final FastParseRunnerProvider provider = new FastParseRunnerProvider();
+	private final AsciiDocParser parser = Parboiled.createParser(
+			AsciiDocParser.class, 1000L, provider);
+
+	@Test
+	public void reusesRunnerPerRule() throws Exception {
+		assertSame(provider.get(parser.Document()),
+				provider.get(parser.Document()));
+		AsciiDocProcessor processor = new AsciiDocProcessor(parser);
+		assertEquals("<h1>A</h1>", processor.asciidocToHtml("= A"));
+		assertEquals("<h2>B</h2>", processor.asciidocToHtml("== B"));
+	}
+
+	@Test
+	public void reportsErrorsOnMismatch() throws Exception {
+		ParsingResult<Node> result = provider.get(parser.Title()).run(
+				"no title");
+		assertFalse(result.matched);
+		assertTrue(result.hasErrors());
+	}
+
+	@Test
+	public void usesGivenErrorsAndValueStack() throws Exception {
+		List<ParseError> errors = new ArrayList<ParseError>();
+		ValueStack<Node> stack = new DefaultValueStack<Node>();
+		ParseRunner<Node> runner = provider.get(parser.Title())
+				.withParseErrors(errors).withValueStack(stack);
+
+		ParsingResult<Node> result = runner.run("no title");
+		assertFalse(result.matched);
+		assertSame(errors, result.parseErrors);
+		assertSame(stack, result.valueStack);
+		assertFalse(errors.isEmpty());
+
+		result = runner.run("= Title\n");
+		assertTrue(result.matched);
+		assertSame(stack, result.valueStack);
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+
+import org.asciidocj.ast.DocumentNode;
+import org.junit.Test;
+
+public class FragmentCacheTest {
+
+	private static final String SOURCE = "= Title\n\nfirst paragraph\n\n"
+			+ "== One\n\nsecond paragraph\n\nmore\ntext\n\n"
+			+ "== Two\n\nthird\n\n" + "Three\n-----\n\nfourth\n";
+
+	private final AsciiDocProcessor processor = new AsciiDocProcessor();
+
+	@Test
+	public void rendersLikeUncachedSerializer() throws Exception {
+		RenderCache cache = new RenderCache(10000);
+		assertEquals(render(SOURCE), render(SOURCE, cache));
+		assertEquals(4, cache.getMissCount());
+		assertEquals(render(SOURCE), render(SOURCE, cache));
+		assertEquals(4, cache.getHitCount());
+	}
+
+	@Test
+	public void onlyChangedSectionIsSerializedAgain() throws Exception {
+		RenderCache cache = new RenderCache(10000);
+		render(SOURCE, cache);
+		String edited = SOURCE.replace("more", "much more");
+		assertEquals(render(edited), render(edited, cache));
+		assertEquals(5, cache.getMissCount());
+		assertEquals(3, cache.getHitCount());
+	}
+
+	@Test
+	public void lastSectionDependsOnEndOfSource() throws Exception {
+		RenderCache cache = new RenderCache(10000);
+		String source = "== One\n\ntext\n";
+		render(source + "== Two\n\nmore\n", cache);
+		assertEquals(render(source), render(source, cache));
+	}
+
+	private String render(String source) {
+		return new ToHtmlSerializer().toHtml(processor.parseAsciidoc(source));
+	}
+
+	private String render(String source, RenderCache cache) {
+		DocumentNode root = processor.parseAsciidoc(source);
+		return new ToHtmlSerializer(source, cache).toHtml(root);
+	}
+}
\ No newline at end of file
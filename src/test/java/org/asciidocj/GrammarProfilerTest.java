@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.asciidocj.GrammarProfiler.RuleProfile;
+import org.junit.Test;
+
+public class GrammarProfilerTest {
+
+	private static final String SOURCE = "= Title\n\nfirst paragraph\n"
+			+ "with two lines\n\n== Section\n\nsecond paragraph\n";
+
+	@Test
+	public void profilesSumUpDocuments() throws Exception {
+		GrammarProfiler profiler = new GrammarProfiler();
+		profiler.profile(SOURCE);
+		profiler.profile(SOURCE);
+		assertEquals(2, profiler.getDocumentCount());
+
+		List<RuleProfile> profiles = profiler.getRuleProfiles();
+		RuleProfile document = find(profiles, "Document");
+		assertEquals(2, document.getInvocations());
+		assertEquals(2, document.getMatches());
+		for (int i = 1; i < profiles.size(); i++) {
+			long previous = profiles.get(i - 1).getTime(TimeUnit.NANOSECONDS);
+			assertTrue(previous >= profiles.get(i).getTime(TimeUnit.NANOSECONDS));
+		}
+	}
+
+	@Test
+	public void memoHitsAreCounted() throws Exception {
+		GrammarProfiler profiler = new GrammarProfiler();
+		profiler.profile(SOURCE);
+		List<RuleProfile> profiles = profiler.getRuleProfiles();
+
+		RuleProfile endline = find(profiles, "Endline");
+		assertTrue(endline.isMemoized());
+		assertTrue(endline.getMemoHits() > 0);
+		assertTrue(endline.getMemoHits() <= endline.getRemismatches());
+		assertFalse(find(profiles, "Para").isMemoized());
+		assertTrue(profiler.printReport(5).contains("Document"));
+	}
+
+	private static RuleProfile find(List<RuleProfile> profiles, String name) {
+		for (RuleProfile profile : profiles) {
+			if (profile.getName().equals(name))
+				return profile;
+		}
+		fail("No profile of " + name);
+		return null;
+	}
+}
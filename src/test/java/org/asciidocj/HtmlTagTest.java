@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class HtmlTagTest {
+
+	@Test
+	public void headingsAreShared() throws Exception {
+		assertSame(HtmlTag.heading(2), HtmlTag.heading(2));
+		assertEquals("<h2>", new String(HtmlTag.heading(2).open));
+		assertEquals("h9", HtmlTag.heading(9).getName());
+	}
+
+	@Test
+	public void ofBuildsNewTags() throws Exception {
+		HtmlTag tag = HtmlTag.of("custom");
+		assertEquals("<custom>", new String(tag.open));
+		assertEquals("</custom>", new String(tag.close));
+		assertNotSame(tag, HtmlTag.of("custom"));
+	}
+}
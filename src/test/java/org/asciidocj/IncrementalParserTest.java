@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.asciidocj.ast.DocumentNode;
+import org.asciidocj.ast.Node;
+import org.junit.Test;
+
+public class IncrementalParserTest {
+
+	private static final String SOURCE = "= Title\n\nfirst paragraph\n\n"
+			+ "== One\n\nsecond paragraph\nwith two lines\n\n"
+			+ "== Two\n\nthird\n\n" + "Three\n-----\n\nfourth\n\n"
+			+ "== Four\n\nfifth paragraph\n";
+
+	private final AsciiDocProcessor processor = new AsciiDocProcessor();
+
+	@Test
+	public void editInsideParagraph() throws Exception {
+		assertReparse(SOURCE.indexOf("third"), 0, "more ");
+	}
+
+	@Test
+	public void editReusesSectionsBehindEdit() throws Exception {
+		DocumentNode previous = processor.parseAsciidoc(SOURCE);
+		Node last = previous.getChildren().get(4);
+		int offset = SOURCE.indexOf("first");
+		String edited = SOURCE.substring(0, offset) + "the "
+				+ SOURCE.substring(offset);
+		DocumentNode reparsed = processor.reparseAsciidoc(previous, edited,
+				offset, 0, 4);
+		assertSame(last, reparsed.getChildren().get(4));
+		assertEquals(dump(processor.parseAsciidoc(edited)), dump(reparsed));
+	}
+
+	@Test
+	public void editSourceInPlace() throws Exception {
+		StringBuilder source = new StringBuilder(SOURCE);
+		DocumentNode previous = processor.parseAsciidoc(source);
+		int offset = SOURCE.indexOf("first");
+		source.insert(offset, "the ");
+		DocumentNode reparsed = processor.reparseAsciidoc(previous, source,
+				offset, 0, 4);
+		assertEquals(processor.asciidocToHtml(source.toString()),
+				new ToHtmlSerializer().toHtml(reparsed));
+	}
+
+	@Test
+	public void removingTitleMergesSections() throws Exception {
+		int offset = SOURCE.indexOf("== Two");
+		assertReparse(offset, 3, "");
+	}
+
+	@Test
+	public void insertingTitleSplitsSection() throws Exception {
+		assertReparse(SOURCE.indexOf("with two lines"), 0, "\n== New\n\n");
+	}
+
+	@Test
+	public void removingUnderlineOfTwoLineTitle() throws Exception {
+		assertReparse(SOURCE.indexOf("-----"), 6, "");
+	}
+
+	@Test
+	public void editAtDocumentBoundaries() throws Exception {
+		assertReparse(0, 2, "");
+		assertReparse(0, 0, "== Zero\n\n");
+		assertReparse(SOURCE.length(), 0, "\n== Five\n\nsixth\n");
+		assertReparse(SOURCE.length() - 10, 10, "");
+	}
+
+	@Test
+	public void replaceEverything() throws Exception {
+		assertReparse(0, SOURCE.length(), "= Other\n\ntext\n");
+	}
+
+	private void assertReparse(int offset, int removedLength, String inserted) {
+		String edited = SOURCE.substring(0, offset) + inserted
+				+ SOURCE.substring(offset + removedLength);
+		DocumentNode previous = processor.parseAsciidoc(SOURCE);
+		DocumentNode reparsed = processor.reparseAsciidoc(previous, edited,
+				offset, removedLength, inserted.length());
+		assertEquals(dump(processor.parseAsciidoc(edited)), dump(reparsed));
+	}
+
+	private static String dump(Node node) {
+		StringBuilder sb = new StringBuilder();
+		dump(node, 0, sb);
+		return sb.toString();
+	}
+
+	private static void dump(Node node, int level, StringBuilder sb) {
+		for (int i = 0; i < level; i++)
+			sb.append("  ");
+		sb.append(node).append('\n');
+		for (Node child : node.getChildren())
+			dump(child, level + 1, sb);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.asciidocj.ast.Node;
+import org.junit.Test;
+import org.parboiled.Parboiled;
+
+public class LineScannerTest {
+
+	private static final String[] LINES = { "", " ", "text", "more words ",
+			"= Title", "== Title ==", "=", "===", "---", "-----", "~~~",
+			"^^^^", "+++", "==x", "> quote", "  indented", "a  ", "\t" };
+
+	private static final String[] NEWLINES = { "\n", "\n", "\n", "\r\n", "\r" };
+
+	@Test
+	public void sameTreesAsGrammarLookaheads() throws Exception {
+		AsciiDocParser scanning = parser(true);
+		AsciiDocParser matching = parser(false);
+		Random random = new Random(42);
+		for (int i = 0; i < 2000; i++) {
+			String source = document(random);
+			assertEquals(source, dump(matching.parse(new SourceInputBuffer(
+					source))), dump(scanning.parse(new SourceInputBuffer(
+					source))));
+		}
+	}
+
+	private static AsciiDocParser parser(boolean lineScanning) {
+		AsciiDocParser parser = Parboiled.createParser(AsciiDocParser.class,
+				10000L, new FastParseRunnerProvider());
+		parser.setLineScanning(lineScanning);
+		return parser;
+	}
+
+	private static String document(Random random) {
+		StringBuilder sb = new StringBuilder();
+		int lines = random.nextInt(12);
+		for (int i = 0; i < lines; i++) {
+			sb.append(LINES[random.nextInt(LINES.length)]);
+			if (i < lines - 1 || random.nextBoolean())
+				sb.append(NEWLINES[random.nextInt(NEWLINES.length)]);
+		}
+		return sb.toString();
+	}
+
+	private static String dump(Node node) {
+		StringBuilder sb = new StringBuilder();
+		dump(node, 0, sb);
+		return sb.toString();
+	}
+
+	private static void dump(Node node, int level, StringBuilder sb) {
+		for (int i = 0; i < level; i++)
+			sb.append("  ");
+		sb.append(node).append('\n');
+		for (Node child : node.getChildren())
+			dump(child, level + 1, sb);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.parboiled.buffers.InputBuffer;
+
+public class MappedFileInputBufferTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String SOURCE = "= Tïtle éè\n\n"
+			+ "some text with 😀 and €\r\nmore text\n"
+			+ "== Section 中文\n\nlast";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void decodesLikeSourceInputBuffer() throws Exception {
+		String[] charsets = { "UTF-8", "UTF-16", "ISO-8859-1" };
+		for (String name : charsets) {
+			Charset charset = Charset.forName(name);
+			String source = new String(SOURCE.getBytes(charset), charset);
+			InputBuffer expected = new SourceInputBuffer(source);
+			InputBuffer buffer = new MappedFileInputBuffer(
+					ByteBuffer.wrap(source.getBytes(charset)), charset, 16);
+			// read backwards first to exercise decoding on demand
+			for (int i = source.length() + 3; i >= -1; i--)
+				assertEquals(expected.charAt(i), buffer.charAt(i));
+			for (int i = 0; i <= source.length() + 2; i++) {
+				assertEquals(expected.getPosition(i), buffer.getPosition(i));
+				assertEquals(expected.extract(0, i), buffer.extract(0, i));
+				assertEquals(expected.extract(i, i + 20),
+						buffer.extract(i, i + 20));
+			}
+			assertEquals(expected.getLineCount(), buffer.getLineCount());
+			for (int line = 1; line <= expected.getLineCount(); line++)
+				assertEquals(expected.extractLine(line),
+						buffer.extractLine(line));
+		}
+	}
+
+	@Test
+	public void emptyInput() throws Exception {
+		InputBuffer buffer = new MappedFileInputBuffer(ByteBuffer
+				.allocate(0), UTF8, 16);
+		assertTrue(buffer.test(0, "\n\n".toCharArray()));
+		assertFalse(buffer.test(0, "\n\n\n".toCharArray()));
+	}
+
+	@Test
+	public void convertsFiles() throws Exception {
+		File in = folder.newFile("in.adoc");
+		File out = new File(folder.getRoot(), "out.html");
+		FileOutputStream stream = new FileOutputStream(in);
+		stream.write(SOURCE.getBytes(UTF8));
+		stream.close();
+
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		assertTrue(processor.convertFile(in, out, UTF8));
+		assertEquals(processor.asciidocToHtml(SOURCE), read(out));
+
+		ConcurrentAsciiDocProcessor concurrent = new ConcurrentAsciiDocProcessor();
+		assertTrue(concurrent.convertFile(in, out, UTF8));
+		assertEquals(processor.asciidocToHtml(SOURCE), read(out));
+	}
+
+	private static String read(File file) throws Exception {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			byte[] bytes = new byte[(int) raf.length()];
+			raf.readFully(bytes);
+			return new String(bytes, UTF8);
+		} finally {
+			raf.close();
+		}
+	}
+}
\ No newline at end of file
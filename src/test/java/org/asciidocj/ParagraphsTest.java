@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathExists;
+
+import org.junit.Test;
+
+public class ParagraphsTest {
+
+	@Test
+	public void paragraphAfterTitle() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		String html = processor.asciidocToHtml("= My Title\n\nSome text");
+		assertXpathExists("/div/h1[text() = 'My Title']", wrap(html));
+		assertXpathExists("/div/p[text() = 'Some text']", wrap(html));
+	}
+
+	@Test
+	public void multiLineParagraph() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		String html = processor
+				.asciidocToHtml("= My Title\n\nline one\nline two\n");
+		assertXpathExists("/div/p[text() = 'line one line two']", wrap(html));
+	}
+
+	@Test
+	public void paragraphsAndSections() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		String html = processor.asciidocToHtml("= My Title\n\none\n\ntwo\n"
+				+ "== Section\n\nthree\n");
+		assertXpathEvaluatesTo("3", "count(/div/p)", wrap(html));
+		assertXpathExists("/div/h2[text() = 'Section']", wrap(html));
+		assertXpathExists("/div/h2/following-sibling::p[text() = 'three']",
+				wrap(html));
+	}
+
+	@Test
+	public void hardLineBreak() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		String html = processor.asciidocToHtml("= My Title\n\none  \ntwo");
+		assertXpathExists("/div/p/br", wrap(html));
+	}
+
+	@Test
+	public void spaceRunsCollapse() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		String html = processor
+				.asciidocToHtml("= My  \tTitle\n\nsome \t  words\tand\nmore");
+		assertXpathExists("/div/h1[text() = 'My Title']", wrap(html));
+		assertXpathExists("/div/p[text() = 'some words and more']",
+				wrap(html));
+	}
+
+	private static String wrap(String html) {
+		return "<div>" + html + "</div>";
+	}
+}
\ No newline at end of file
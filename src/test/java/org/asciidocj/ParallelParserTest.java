@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.asciidocj.ast.DocumentNode;
+import org.asciidocj.ast.Node;
+import org.junit.After;
+import org.junit.Test;
+
+public class ParallelParserTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+	private final ConcurrentAsciiDocProcessor processor = new ConcurrentAsciiDocProcessor(
+			new AsciiDocParserPool(4, 10000));
+
+	@After
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void smallDocumentIsOneChunk() throws Exception {
+		assertParallel("= Title\n\nfirst\n\n== One\n\nsecond\n");
+	}
+
+	@Test
+	public void largeDocumentMatchesSequentialParse() throws Exception {
+		String source = book("");
+		assertTrue(ParallelParser.chunkStarts(source, 16 * 1024).length > 4);
+		assertParallel(source);
+	}
+
+	@Test
+	public void linesLookingLikeTitlesInsideSections() throws Exception {
+		// '=' lines without text and underlines after blank lines are no
+		// titles, so chunks starting there have to be parsed again
+		assertParallel(book("=\n\n\n---\n\n===\n"));
+	}
+
+	@Test
+	public void documentWithoutTitles() throws Exception {
+		assertParallel("no title\n\n" + book(""));
+	}
+
+	@Test
+	public void parseFromTaskOfSameBoundedExecutor() throws Exception {
+		// the only worker runs the parse, so the chunks it queues are never
+		// started by the executor
+		final ExecutorService single = Executors.newSingleThreadExecutor();
+		try {
+			final String source = book("");
+			Future<DocumentNode> parsed = single
+					.submit(new Callable<DocumentNode>() {
+						public DocumentNode call() {
+							return processor.parseAsciidoc(source, single);
+						}
+					});
+			assertEquals(dump(processor.parseAsciidoc(source)),
+					dump(parsed.get(30, TimeUnit.SECONDS)));
+		} finally {
+			single.shutdown();
+		}
+	}
+
+	private void assertParallel(String source) {
+		assertEquals(dump(processor.parseAsciidoc(source)),
+				dump(processor.parseAsciidoc(source, executor)));
+	}
+
+	private static String book(String filler) {
+		StringBuilder sb = new StringBuilder("= Book\n\n");
+		for (int i = 0; i < 400; i++) {
+			if (i % 3 == 0)
+				sb.append("== Chapter ").append(i).append("\n\n");
+			else
+				sb.append("Section ").append(i).append("\n-------\n\n");
+			for (int j = 0; j < 10; j++)
+				sb.append("Paragraph ").append(j)
+						.append(" with some text\nspanning two lines\n\n")
+						.append(filler);
+		}
+		return sb.toString();
+	}
+
+	private static String dump(Node node) {
+		StringBuilder sb = new StringBuilder();
+		dump(node, 0, sb);
+		return sb.toString();
+	}
+
+	private static void dump(Node node, int level, StringBuilder sb) {
+		for (int i = 0; i < level; i++)
+			sb.append("  ");
+		sb.append(node).append('\n');
+		for (Node child : node.getChildren())
+			dump(child, level + 1, sb);
+	}
+}
\ No newline at end of file
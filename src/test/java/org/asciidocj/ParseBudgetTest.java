@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ParseBudgetTest {
+
+	private static final String SOURCE = "= Title\n\nsome words in a paragraph\n";
+
+	@Test
+	public void unlimitedBudgetParses() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor(new ParseBudget(
+				ParseBudget.UNLIMITED, ParseBudget.UNLIMITED, 1, true));
+		assertEquals("<h1>Title</h1><p>some words in a paragraph</p>",
+				processor.asciidocToHtml(SOURCE));
+	}
+
+	@Test
+	public void expiredTimeFailsAtFirstStep() throws Exception {
+		assertNull(new AsciiDocProcessor(-1).asciidocToHtml(SOURCE));
+	}
+
+	@Test
+	public void stepLimit() throws Exception {
+		assertNull(new AsciiDocProcessor(new ParseBudget(
+				ParseBudget.UNLIMITED, 4, 1, false)).asciidocToHtml(SOURCE));
+		assertEquals("<h1>Title</h1>", new AsciiDocProcessor(new ParseBudget(
+				ParseBudget.UNLIMITED, 4, 1, false)).asciidocToHtml("= Title"));
+	}
+
+	@Test
+	public void interruptCancelsParse() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor(new ParseBudget(
+				ParseBudget.UNLIMITED, ParseBudget.UNLIMITED, 1, true));
+		Thread.currentThread().interrupt();
+		try {
+			processor.parseAsciidoc(SOURCE);
+		} catch (ParsingCancelledException e) {
+			assertTrue(Thread.currentThread().isInterrupted());
+			return;
+		} finally {
+			Thread.interrupted();
+		}
+		throw new AssertionError("not cancelled");
+	}
+
+	@Test
+	public void interruptIgnoredByDefault() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		Thread.currentThread().interrupt();
+		try {
+			assertEquals("<h1>Title</h1>", processor.asciidocToHtml("= Title"));
+		} finally {
+			Thread.interrupted();
+		}
+	}
+}
\ No newline at end of file
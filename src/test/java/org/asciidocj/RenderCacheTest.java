@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RenderCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void repeatedConversionHitsCache() throws Exception {
+		RenderCache cache = new RenderCache(1000);
+		CachingAsciiDocProcessor processor = new CachingAsciiDocProcessor(
+				cache);
+		assertEquals("<h1>Title</h1>", processor.asciidocToHtml("= Title"));
+		assertEquals("<h1>Title</h1>",
+				processor.asciidocToHtml("= Title".toCharArray()));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		processor.invalidate("= Title");
+		assertEquals(0, cache.size());
+		processor.asciidocToHtml("= Title");
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedByWeight() throws Exception {
+		RenderCache cache = new RenderCache(10);
+		cache.put("a", "1234");
+		cache.put("b", "1234");
+		cache.get("a");
+		cache.put("c", "1234");
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(8, cache.getWeight());
+		assertNull(cache.get("b"));
+		assertEquals("1234", cache.get("a"));
+		cache.put("d", "too long to cache");
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void diskTierSurvivesNewCache() throws Exception {
+		RenderCache cache = new RenderCache(1000, folder.getRoot());
+		String key = RenderCache.key("test", "é");
+		cache.put(key, "<p>é</p>");
+		RenderCache restarted = new RenderCache(1000, folder.getRoot());
+		assertEquals("<p>é</p>", restarted.get(key));
+		assertEquals(1, restarted.getDiskHitCount());
+		assertEquals("<p>é</p>", restarted.get(key));
+		assertEquals(1, restarted.getHitCount());
+		restarted.invalidateAll();
+		assertNull(new RenderCache(1000, folder.getRoot()).get(key));
+	}
+
+	@Test
+	public void keyDependsOnConfigurationAndSource() throws Exception {
+		String key = RenderCache.key("x", "= Title");
+		assertEquals(key, RenderCache.key("x", new StringBuilder("= Title")));
+		assertFalse(key.equals(RenderCache.key("y", "= Title")));
+		assertFalse(key.equals(RenderCache.key("x", "= Titel")));
+	}
+
+	@Test
+	public void failedWriteLeavesNoTemporaryFile() throws Exception {
+		RenderCache cache = new RenderCache(1000, folder.getRoot());
+		// a non-empty directory in the way of the entry makes the rename fail
+		File blocker = new File(folder.getRoot(), "a.html");
+		assertTrue(new File(blocker, "child").mkdirs());
+		cache.put("a", "<p>a</p>");
+		assertEquals(1, folder.getRoot().list().length);
+		assertEquals("<p>a</p>", cache.get("a"));
+	}
+
+	@Test
+	public void invalidateAllRemovesTemporaryFiles() throws Exception {
+		RenderCache cache = new RenderCache(1000, folder.getRoot());
+		File.createTempFile("entry", ".tmp", folder.getRoot());
+		cache.put(RenderCache.key("test", "a"), "<p>a</p>");
+		cache.invalidateAll();
+		assertEquals(0, folder.getRoot().list().length);
+	}
+
+	@Test
+	public void invalidateAllKeepsOtherFiles() throws Exception {
+		RenderCache cache = new RenderCache(1000, folder.getRoot());
+		cache.put(RenderCache.key("test", "a"), "<p>a</p>");
+		File index = folder.newFile("index.html");
+		File notes = folder.newFile("notes.tmp");
+		cache.invalidateAll();
+		assertEquals(2, folder.getRoot().list().length);
+		assertTrue(index.isFile());
+		assertTrue(notes.isFile());
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.CharBuffer;
+
+import org.junit.Test;
+import org.parboiled.buffers.DefaultInputBuffer;
+import org.parboiled.buffers.InputBuffer;
+import org.parboiled.support.Chars;
+
+public class SourceInputBufferTest {
+
+	private static final String SOURCE = "= My Title\r\n\nsome text";
+
+	@Test
+	public void behavesLikePaddedCopy() throws Exception {
+		InputBuffer expected = new DefaultInputBuffer((SOURCE + "\n\n")
+				.toCharArray());
+		InputBuffer[] buffers = { new SourceInputBuffer(SOURCE),
+				new SourceInputBuffer(SOURCE.toCharArray()) };
+		for (InputBuffer buffer : buffers) {
+			for (int i = -1; i <= SOURCE.length() + 3; i++) {
+				assertEquals(expected.charAt(i), buffer.charAt(i));
+				assertEquals(expected.getPosition(i), buffer.getPosition(i));
+				for (int j = i; j <= SOURCE.length() + 3; j++)
+					assertEquals(expected.extract(i, j), buffer.extract(i, j));
+			}
+			assertEquals(expected.getLineCount(), buffer.getLineCount());
+			for (int line = 1; line <= expected.getLineCount(); line++)
+				assertEquals(expected.extractLine(line),
+						buffer.extractLine(line));
+		}
+	}
+
+	@Test
+	public void testsAcrossVirtualNewlines() throws Exception {
+		InputBuffer buffer = new SourceInputBuffer("abc");
+		assertTrue(buffer.test(2, "c\n\n".toCharArray()));
+		assertFalse(buffer.test(2, "c\n\n\n".toCharArray()));
+		assertEquals(Chars.EOI, buffer.charAt(5));
+	}
+
+	@Test
+	public void convertsCharSequences() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		String source = "= My Title\n\nsome text\n== Section\n\nmore text";
+		String html = processor.asciidocToHtml(source.toCharArray());
+		assertEquals(html, processor.asciidocToHtml(source));
+		assertEquals(html, processor.asciidocToHtml(new StringBuilder(source)));
+		assertEquals(html, processor.asciidocToHtml(CharBuffer.wrap(source)));
+	}
+}
\ No newline at end of file
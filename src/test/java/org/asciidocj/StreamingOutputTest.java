@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+import org.asciidocj.ast.TextNode;
+import org.junit.Test;
+
+public class StreamingOutputTest {
+
+	private static final String SOURCE = "= My Title\n\nfirst paragraph\n"
+			+ "with two lines\n\n== Section\n\nsecond  \nparagraph\n";
+
+	@Test
+	public void writerReceivesSameHtml() throws Exception {
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		StringWriter writer = new StringWriter();
+		assertTrue(processor.asciidocToHtml(SOURCE.toCharArray(), writer));
+		assertEquals(processor.asciidocToHtml(SOURCE), writer.toString());
+	}
+
+	@Test
+	public void outputStreamReceivesSameHtml() throws Exception {
+		Charset utf8 = Charset.forName("UTF-8");
+		AsciiDocProcessor processor = new AsciiDocProcessor();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertTrue(processor.asciidocToHtml(SOURCE.toCharArray(), out, utf8));
+		assertEquals(processor.asciidocToHtml(SOURCE), new String(
+				out.toByteArray(), utf8));
+	}
+
+	@Test
+	public void printerReadsBuffersFromTheirPosition() throws Exception {
+		char[] chars = "..<a>..".toCharArray();
+		CharBuffer moved = CharBuffer.wrap(chars);
+		moved.position(2);
+		CharBuffer sliced = CharBuffer.wrap(chars, 2, 5).slice();
+		for (CharBuffer buffer : new CharBuffer[] { moved, sliced }) {
+			TextNode node = new TextNode(buffer, 0, 3);
+			assertEquals("<a>", new Printer().print(node).getString());
+			assertEquals("&lt;a&gt;", new Printer().printEncoded(node)
+					.getString());
+		}
+	}
+
+	@Test
+	public void printerFlushesInChunks() throws Exception {
+		StringBuilder sink = new StringBuilder();
+		Printer printer = new Printer(sink, 4);
+		printer.print("<p>").print("some text").print('x');
+		assertEquals("<p>some text", sink.toString());
+		assertEquals("x", printer.getString());
+		printer.println().indent(2).println().print('y').flush();
+		assertEquals("<p>some textx\n\n  y", sink.toString());
+	}
+}
\ No newline at end of file
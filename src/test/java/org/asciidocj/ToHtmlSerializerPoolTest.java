@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2013 Ricardo Arguello
+ *
+ * Based on pegdown (c) 2010-2011 Mathias Doenitz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asciidocj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ToHtmlSerializerPoolTest {
+
+	private static final String SOURCE = "= Title\n\nfirst paragraph\n\n"
+			+ "== Section\n\nsecond paragraph\n";
+
+	private final AsciiDocProcessor processor = new AsciiDocProcessor();
+
+	@Test
+	public void reusedSerializerStartsAfresh() throws Exception {
+		String expected = new ToHtmlSerializer().toHtml(processor
+				.parseAsciidoc(SOURCE));
+		assertEquals(expected, processor.asciidocToHtml(SOURCE));
+		assertEquals(expected, processor.asciidocToHtml(SOURCE));
+		assertEquals(expected, processor.asciidocToHtml(SOURCE.toCharArray()));
+	}
+
+	@Test
+	public void threadKeepsOneSerializer() throws Exception {
+		ToHtmlSerializerPool pool = new ToHtmlSerializerPool();
+		ToHtmlSerializer first = pool.borrow(1000);
+		ToHtmlSerializer nested = pool.borrow(10);
+		assertNotSame(first, nested);
+		pool.release(nested);
+		pool.release(first);
+		assertSame(first, pool.borrow(10));
+		assertTrue(first.getBufferCapacity() >= 1000);
+	}
+
+	@Test
+	public void largeBuffersAreNotKept() throws Exception {
+		ToHtmlSerializerPool pool = new ToHtmlSerializerPool(100);
+		ToHtmlSerializer serializer = pool.borrow(1000);
+		pool.release(serializer);
+		assertNotSame(serializer, pool.borrow(10));
+	}
+}